@@ -0,0 +1,139 @@
+package semant.bench;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import semant.CompileVisitor;
+import semant.PrettyPrinter;
+import semant.VM;
+import semant.WhileParser;
+import semant.amsyntax.Program;
+import semant.signexc.SignExc;
+import semant.signexc.SignExcDomain;
+import semant.whilesyntax.Stm;
+
+/**
+ * Measures each phase of the analysis on the sample programs, every
+ * phase starting from the output of the previous ones. Run with
+ * `ant bench`, which adds the GC profiler for allocation rates. Every
+ * sample that parses must be listed in the parameters, or the setup
+ * fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+    private static final String[] SAMPLE_DIRS = {
+        "samples", "samples/custom", "samples/custom-sign"
+    };
+    private static final Set<String> UNPARSED = new HashSet<String>(Arrays.asList(
+        "samples/custom/try_empty.while"
+    ));
+
+    @Param({
+        "samples/divtest.while",
+        "samples/factorial.while",
+        "samples/factorize.while",
+        "samples/fibonacci.while",
+        "samples/gcd.while",
+        "samples/infinite.while",
+        "samples/time.while",
+        "samples/trycatchsample.while",
+        "samples/custom/bisection.while",
+        "samples/custom/bubblesort.while",
+        "samples/custom/deep_nesting.while",
+        "samples/custom/digit_sum.while",
+        "samples/custom/division_without_operator.while",
+        "samples/custom/exception_outside_try.while",
+        "samples/custom/legendre.while",
+        "samples/custom/modulo.while",
+        "samples/custom/newton_raphson.while",
+        "samples/custom/prime.while",
+        "samples/custom/try_nested.while",
+        "samples/custom/unreachable_loop_body.while",
+        "samples/custom-sign/boolean_exception.while",
+        "samples/custom-sign/division_exception.while",
+        "samples/custom-sign/exceptional_term_outside_try.while",
+        "samples/custom-sign/if_nested.while",
+        "samples/custom-sign/infinite_loop.while",
+        "samples/custom-sign/possibly_exceptional_termination.while",
+        "samples/custom-sign/superfluous_try.while",
+        "samples/custom-sign/unreachable_code.while",
+        "samples/custom-sign/unreachable_code_fail.while"
+    })
+    public String file;
+
+    private Stm stm;
+    private Program program;
+    private VM<SignExc> vm;
+    private PrintStream out;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        checkSamples();
+        stm = WhileParser.parse(file);
+        program = compile();
+        vm = execute();
+        vm.computeLubs();
+        out = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Fail if a sample is neither in the parameters nor known not to
+     * parse, so that new samples are measured too.
+     */
+    private static void checkSamples() throws Exception {
+        Set<String> files = new HashSet<String>(Arrays.asList(PhaseBenchmark.class
+            .getField("file").getAnnotation(Param.class).value()));
+        for (String dir : SAMPLE_DIRS) {
+            for (File f : new File(dir).listFiles()) {
+                String path = dir + "/" + f.getName();
+                if (path.endsWith(".while") && !files.contains(path)
+                        && !UNPARSED.contains(path))
+                    throw new IllegalStateException(path + " is not benchmarked");
+            }
+        }
+    }
+
+    @Benchmark
+    public Stm parse() throws Exception {
+        return WhileParser.parse(file);
+    }
+
+    @Benchmark
+    public Program compile() {
+        CompileVisitor compiler = new CompileVisitor();
+        stm.accept(compiler);
+        return compiler.getProgram();
+    }
+
+    @Benchmark
+    public VM<SignExc> execute() throws Exception {
+        VM<SignExc> vm = new VM<SignExc>(program, SignExcDomain.INSTANCE, false, false);
+        vm.execute();
+        return vm;
+    }
+
+    @Benchmark
+    public VM<SignExc> computeLubs() {
+        vm.computeLubs();
+        return vm;
+    }
+
+    @Benchmark
+    public PrettyPrinter prettyPrint() {
+        PrettyPrinter p = new PrettyPrinter(vm, out);
+        stm.accept(p);
+        p.printTermination();
+        return p;
+    }
+}
@@ -0,0 +1,108 @@
+package semant.bench;
+
+import java.util.Random;
+
+/**
+ * Generates While programs of a given shape for scaling runs. A
+ * program initializes its variables and then runs a block of
+ * assignments, where every block but the innermost ends in a while,
+ * if or try-catch (in turn by depth) around the next block. Else and
+ * catch branches are single assignments, so the size is linear in
+ * every parameter.
+ */
+public class ProgramGenerator {
+
+    private static final String[] OPS = { "+", "-", "*" };
+
+    private final int variables;    // Number of variables
+    private final int depth;        // Nesting of while/if/try
+    private final int length;       // Assignments per block
+    private final double divisions; // Share of operators that divide
+    private final Random random;
+
+    public ProgramGenerator(int variables, int depth, int length,
+                            double divisions, long seed) {
+        this.variables = Math.max(variables, 1);
+        this.depth     = depth;
+        this.length    = length;
+        this.divisions = divisions;
+        random         = new Random(seed);
+    }
+
+    /**
+     * Return the source of a new program.
+     */
+    public String generate() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < variables; ++i)
+            sb.append(var(i) + " := " + random.nextInt(10) + ";\n");
+        block(sb, depth, "");
+        return sb.toString();
+    }
+
+    /**
+     * Return the name of variable `i`, identifiers are letters only.
+     */
+    private static String var(int i) {
+        String name = "";
+        do {
+            name = (char) ('a' + i % 26) + name;
+            i /= 26;
+        } while (i > 0);
+        return "x" + name;
+    }
+
+    private String var() {
+        return var(random.nextInt(variables));
+    }
+
+    private String operand() {
+        return random.nextBoolean() ? var() : "" + random.nextInt(10);
+    }
+
+    private String aexp() {
+        String op = random.nextDouble() < divisions ? "/" :
+            OPS[random.nextInt(OPS.length)];
+        return var() + " " + op + " " + operand();
+    }
+
+    private String bexp() {
+        return var() + (random.nextBoolean() ? " <= " : " = ") + operand();
+    }
+
+    /**
+     * Append a block nesting `d` more levels, indented by `indent`.
+     */
+    private void block(StringBuilder sb, int d, String indent) {
+        for (int i = 0; i < length; ++i) {
+            sb.append(indent + var() + " := " + aexp());
+            if (i < length - 1 || d > 0)
+                sb.append(";");
+            sb.append("\n");
+        }
+        if (length == 0 && d == 0)
+            sb.append(indent + "skip\n");
+        if (d == 0)
+            return;
+
+        String inner = indent + "    ";
+        switch (d % 3) {
+            case 0:
+                sb.append(indent + "while " + bexp() + " do (\n");
+                block(sb, d - 1, inner);
+                sb.append(indent + ")\n");
+                break;
+            case 1:
+                sb.append(indent + "if " + bexp() + " then (\n");
+                block(sb, d - 1, inner);
+                sb.append(indent + ") else\n");
+                sb.append(inner + var() + " := " + aexp() + "\n");
+                break;
+            default:
+                sb.append(indent + "try (\n");
+                block(sb, d - 1, inner);
+                sb.append(indent + ") catch\n");
+                sb.append(inner + var() + " := " + aexp() + "\n");
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package semant.bench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import semant.CompileVisitor;
+import semant.VM;
+import semant.WhileParser;
+import semant.amsyntax.Program;
+import semant.signexc.SignExc;
+import semant.signexc.SignExcDomain;
+import semant.whilesyntax.Stm;
+
+/**
+ * Grows one parameter of the generated programs at a time, keeping the
+ * others at their base values, and prints a CSV row per program with
+ * the explored states, the wall time and peak heap of the VM. A
+ * parameter stops growing once a run fails, e.g. by running out of
+ * stack or heap, or is still running at the limit. Such a run is
+ * recorded as a timeout and left to a daemon thread, as the VM cannot
+ * be stopped.
+ *
+ * Usage: ScalingRunner [variables depth length divisions limit-ms]
+ */
+public class ScalingRunner {
+
+    private static final int MAX_VARIABLES = 1024;
+    private static final int MAX_DEPTH     = 64;
+    private static final int MAX_LENGTH    = 1 << 20;
+
+    private final int    variables; // Base values of the parameters
+    private final int    depth;
+    private final int    length;
+    private final double divisions;
+    private final long   limit;     // Milliseconds a run may take
+
+    public ScalingRunner(int variables, int depth, int length,
+                         double divisions, long limit) {
+        this.variables = variables;
+        this.depth     = depth;
+        this.length    = length;
+        this.divisions = divisions;
+        this.limit     = limit;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new ScalingRunner(
+            args.length > 0 ? Integer.parseInt(args[0]) : 2,
+            args.length > 1 ? Integer.parseInt(args[1]) : 1,
+            args.length > 2 ? Integer.parseInt(args[2]) : 2,
+            args.length > 3 ? Double.parseDouble(args[3]) : 0.1,
+            args.length > 4 ? Long.parseLong(args[4]) : 10000).runAll();
+    }
+
+    /**
+     * Grow each parameter in turn and print the rows.
+     */
+    public void runAll() throws Exception {
+        System.out.println("parameter,value,variables,depth,length,divisions," +
+                           "states,millis,peak_heap_mb,status");
+        for (int v = variables; v <= MAX_VARIABLES &&
+                 run("variables", v, v, depth, length, divisions); v *= 2);
+        for (int d = depth; d <= MAX_DEPTH &&
+                 run("depth", d, variables, d, length, divisions); ++d);
+        for (int l = length; l <= MAX_LENGTH &&
+                 run("length", l, variables, depth, l, divisions); l *= 2);
+        for (int i = 0; i <= 10; ++i)
+            if (!run("divisions", i / 10.0, variables, depth, length, i / 10.0))
+                break;
+    }
+
+    /**
+     * Analyze one generated program and print its row, return whether
+     * it finished within the limit.
+     */
+    private boolean run(String parameter, double value, int variables,
+                        int depth, int length, double divisions)
+            throws Exception {
+        String row = String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.2f,",
+                parameter, value == (int) value ? "" + (int) value : "" + value,
+                variables, depth, length, divisions);
+        try {
+            return run(row, variables, depth, length, divisions);
+        } catch (StackOverflowError | OutOfMemoryError e) {
+            System.out.println(row + ",,," + e.getClass().getSimpleName());
+            return false;
+        }
+    }
+
+    private boolean run(String row, int variables, int depth,
+                        int length, double divisions) throws Exception {
+        String source = new ProgramGenerator(variables, depth, length,
+                                             divisions, 42).generate();
+        File file = File.createTempFile("scaling", ".while");
+        file.deleteOnExit();
+        try (FileWriter w = new FileWriter(file)) {
+            w.write(source);
+        }
+
+        Stm s = WhileParser.parse(file.getPath());
+        CompileVisitor compiler = new CompileVisitor();
+        s.accept(compiler);
+        Program program = compiler.getProgram();
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+
+        VM<SignExc> vm = new VM<SignExc>(program, SignExcDomain.INSTANCE, false, false);
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "scaling-run");
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime();
+        Future<?> analysis = executor.submit(() -> {
+            vm.execute();
+            vm.computeLubs();
+            return null;
+        });
+        try {
+            analysis.get(limit, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            analysis.cancel(true);
+            System.out.println(row + ",,,timeout");
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+
+        System.out.println(row + vm.getVisitedCount() + "," + millis + "," +
+                           (peak >> 20) + ",ok");
+        return true;
+    }
+}
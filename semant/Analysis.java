@@ -0,0 +1,47 @@
+package semant;
+
+import java.util.HashMap;
+import semant.signexc.SignExc;
+import semant.signexc.TTExc;
+
+/**
+ * The results of an abstract execution, as read by the PrettyPrinter,
+ * with integer values `A`.
+ */
+public interface Analysis<A> {
+
+    /**
+     * Return the number of last control point
+     */
+    public int lastControlPoint();
+
+    /**
+     * Return the least upper bounds of variables.
+     */
+    public HashMap<String, A>[] getVarLubs();
+
+    /**
+     * Return the least upper bouds of the Z values.
+     */
+    public A[] getZLubs();
+
+    /**
+     * Return the least upper bouds of the TT values.
+     */
+    public TTExc[] getTTLubs();
+
+    /**
+     * Return whether the program exited normally (possibly).
+     */
+    public boolean possiblyNormalTermination();
+
+    /**
+     * Return whether the program exited exceptionally (possibly).
+     */
+    public boolean possiblyExceptionalTermination();
+
+    /**
+     * Return the SignExc that the value `a` abstracts to.
+     */
+    public SignExc sign(A a);
+}
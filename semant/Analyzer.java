@@ -0,0 +1,158 @@
+package semant;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import semant.amsyntax.Program;
+import semant.signexc.SignExc;
+import semant.signexc.SignExcDomain;
+import semant.whilesyntax.Stm;
+
+/**
+ * Runs the whole analysis of one program: parsing, compiling, abstract
+ * execution and printing the annotated program. Analyses share no
+ * state, so several may run at once on different threads.
+ */
+public class Analyzer {
+
+    /**
+     * Analyze the program in `file` with the given options, print the
+     * annotated program to `out`, count the run in `metrics` and return
+     * the result.
+     */
+    public static Analysis<?> analyze(String file, Options options,
+                                   Metrics metrics, PrintStream out)
+            throws Exception {
+        try (FileReader r = new FileReader(file)) {
+            return analyze(r, options, metrics, out, System.err);
+        }
+    }
+
+    /**
+     * Analyze the program read from `source` as above, reporting parse
+     * errors to `err`.
+     */
+    public static Analysis<?> analyze(Reader source, Options options,
+                                      Metrics metrics, PrintStream out,
+                                      PrintStream err) throws Exception {
+        return analyze(source, options, metrics, out, err, null);
+    }
+
+    /**
+     * Analyze the program read from `source` as above, reusing what
+     * the `previous` analysis of an older version of it found where
+     * the edit cannot change it.
+     */
+    @SuppressWarnings("unchecked")
+    public static Analysis<?> analyze(Reader source, Options options,
+                                      Metrics metrics, PrintStream out,
+                                      PrintStream err, Analysis<?> previous)
+            throws Exception {
+        Domain<?> domain = options.domain();
+        boolean signs = domain instanceof SignExcDomain;
+        if (options.fixpoint && !signs)
+            throw new IllegalArgumentException("The fixpoint VM only supports signs");
+
+        // Generate While AST
+        long start = System.nanoTime();
+        Stm s = WhileParser.parse(source, err);
+        metrics.phase("parse", start);
+
+        // Compile s into a flat AM program
+        start = System.nanoTime();
+        CompileVisitor compiler = new CompileVisitor();
+        s.accept(compiler);
+        Program program = compiler.getProgram();
+        metrics.phase("compile", start);
+
+        if (options.debug) {
+            out.println("============ Program =============");
+            out.print(program);
+            out.println();
+            out.println(">>> START");
+        }
+
+        // Look for the results of an equal program in the cache, which
+        // only holds SignExc results
+        ResultCache cache = null;
+        String key = null;
+        Analysis<?> result = null;
+        if (options.cacheDir != null && signs) {
+            start = System.nanoTime();
+            cache = new ResultCache(new File(options.cacheDir),
+                                    options.cacheBytes, options.cacheAge);
+            key = AstFingerprint.of(s, options.resultKey());
+            result = cache.load(key, program.variables());
+            metrics.phase("cacheLoad", start);
+            if (options.debug && result != null)
+                out.println("Cache hit " + key);
+        }
+
+        // Run the program and compute least upper bounds
+        if (result == null && options.fixpoint) {
+            FixpointVM vm = new FixpointVM(program, options.debug);
+            vm.setOutput(out);
+            start = System.nanoTime();
+            vm.execute();
+            metrics.phase("execute", start);
+            start = System.nanoTime();
+            vm.computeLubs();
+            metrics.phase("computeLubs", start);
+            result = vm;
+        } else if (result == null) {
+            result = explore(program, domain, options, metrics, out, previous);
+        }
+        if (cache != null && !(result instanceof CachedAnalysis)) {
+            start = System.nanoTime();
+            try {
+                cache.store(key, (Analysis<SignExc>) result, program.variables());
+            } catch (IOException e) {
+                err.println("Could not cache the result: " + e);
+            }
+            metrics.phase("cacheStore", start);
+        }
+
+        // Pretty print the program with annotations
+        start = System.nanoTime();
+        PrettyPrinter p = new PrettyPrinter(result, out);
+        s.accept(p);
+        p.printTermination();
+        out.println();
+        metrics.phase("print", start);
+
+        return result;
+    }
+
+    /**
+     * Explore `program` with values in `domain` and compute the least
+     * upper bounds, reusing the `previous` analysis if it explored an
+     * older version of the program in the same domain.
+     */
+    private static <A> VM<A> explore(Program program, Domain<A> domain,
+                                     Options options, Metrics metrics,
+                                     PrintStream out, Analysis<?> previous)
+            throws IOException {
+        VM<A> vm = new VM<A>(program, domain, options.debug, options.step);
+        vm.setOutput(out);
+        vm.setThreads(options.threads);
+        vm.setOffHeapCapacity(options.offHeap);
+        vm.setMetrics(metrics);
+        vm.setForgetDead(options.forgetDead);
+        vm.setMergeLimit(options.merge);
+        vm.setRefineGuards(options.refine);
+        vm.setSubsumption(options.subsume);
+        vm.setBlockSummaries(options.blocks);
+        vm.setAtomicExpressions(options.atomic);
+        if (previous instanceof VM)
+            vm.setPrevious((VM<?>) previous);
+        long start = System.nanoTime();
+        vm.execute();
+        metrics.phase("execute", start);
+        start = System.nanoTime();
+        vm.computeLubs();
+        metrics.phase("computeLubs", start);
+        return vm;
+    }
+}
@@ -0,0 +1,154 @@
+package semant;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import semant.whilesyntax.*;
+
+/**
+ * Writes a While AST in a canonical form and hashes it. Variables are
+ * named by order of first occurrence and sequences are flattened, so
+ * programs that differ only in layout, comments, variable names or the
+ * grouping of `;` get the same fingerprint.
+ */
+public class AstFingerprint implements WhileVisitor {
+
+    private StringBuilder sb = new StringBuilder();
+    private HashMap<String, Integer> names = new HashMap<String, Integer>();
+    private Steps steps = new Steps();
+
+    /**
+     * Return the SHA-256 of the canonical form of `s` followed by
+     * `extra`, as hex.
+     */
+    public static String of(Stm s, String extra) {
+        AstFingerprint f = new AstFingerprint();
+        s.accept(f);
+        f.sb.append('|').append(extra);
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(f.sb.toString().getBytes(StandardCharsets.UTF_8));
+            return String.format("%064x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void binary(String op, Aexp a1, Aexp a2) {
+        sb.append(op).append('(');
+        steps.then(() -> a1.accept(this),
+                   () -> sb.append(','),
+                   () -> a2.accept(this),
+                   () -> sb.append(')'));
+    }
+
+    public void visit(Compound compound) {
+        Runnable[] visits = new Runnable[2 * compound.statements().size() - 1];
+        for (int i = 0; i < visits.length; i += 2) {
+            Stm s = compound.statements().get(i / 2);
+            visits[i] = () -> s.accept(this);
+            if (i > 0)
+                visits[i - 1] = () -> sb.append(';');
+        }
+        steps.then(visits);
+    }
+
+    public void visit(Not not) {
+        sb.append("!(");
+        steps.then(() -> not.b.accept(this),
+                   () -> sb.append(')'));
+    }
+
+    public void visit(Conjunction and) {
+        sb.append("&(");
+        steps.then(() -> and.b1.accept(this),
+                   () -> sb.append(','),
+                   () -> and.b2.accept(this),
+                   () -> sb.append(')'));
+    }
+
+    public void visit(Assignment assignment) {
+        sb.append(":=(");
+        steps.then(() -> assignment.x.accept(this),
+                   () -> sb.append(','),
+                   () -> assignment.a.accept(this),
+                   () -> sb.append(')'));
+    }
+
+    public void visit(Conditional conditional) {
+        sb.append("if(");
+        steps.then(() -> conditional.b.accept(this),
+                   () -> sb.append(",{"),
+                   () -> conditional.s1.accept(this),
+                   () -> sb.append("},{"),
+                   () -> conditional.s2.accept(this),
+                   () -> sb.append("})"));
+    }
+
+    public void visit(Equals equals) {
+        binary("=", equals.a1, equals.a2);
+    }
+
+    public void visit(FalseConst f) {
+        sb.append("false");
+    }
+
+    public void visit(LessThanEq lessthaneq) {
+        binary("<=", lessthaneq.a1, lessthaneq.a2);
+    }
+
+    public void visit(Minus minus) {
+        binary("-", minus.a1, minus.a2);
+    }
+
+    public void visit(Num num) {
+        sb.append(new BigInteger(num.n));
+    }
+
+    public void visit(Plus plus) {
+        binary("+", plus.a1, plus.a2);
+    }
+
+    public void visit(Skip skip) {
+        sb.append("skip");
+    }
+
+    public void visit(Times times) {
+        binary("*", times.a1, times.a2);
+    }
+
+    public void visit(TrueConst t) {
+        sb.append("true");
+    }
+
+    public void visit(Var var) {
+        Integer n = names.get(var.id);
+        if (n == null) {
+            n = names.size();
+            names.put(var.id, n);
+        }
+        sb.append('v').append(n);
+    }
+
+    public void visit(While whyle) {
+        sb.append("while(");
+        steps.then(() -> whyle.b.accept(this),
+                   () -> sb.append(",{"),
+                   () -> whyle.s.accept(this),
+                   () -> sb.append("})"));
+    }
+
+    public void visit(TryCatch trycatch) {
+        sb.append("try({");
+        steps.then(() -> trycatch.s1.accept(this),
+                   () -> sb.append("},{"),
+                   () -> trycatch.s2.accept(this),
+                   () -> sb.append("})"));
+    }
+
+    public void visit(Divide div) {
+        binary("/", div.a1, div.a2);
+    }
+}
@@ -0,0 +1,156 @@
+package semant;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyzes many programs in one JVM on a pool of threads. Every
+ * program's annotated output is written to its own file in the output
+ * directory, and a summary line per program to standard output.
+ *
+ * Usage: Batch [-j threads] [-w dir] [-r] (file|dir)... [flags]
+ *
+ * Directories are searched for .while files. With -r a JSON report is
+ * written next to each output, the other flags are those of Main.
+ */
+public class Batch {
+
+    /**
+     * The outcome of analyzing one program.
+     */
+    private static class Result {
+        String file;
+        String summary;
+        boolean failed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        ArrayList<String> rest = new ArrayList<String>(Arrays.asList(args));
+        int jobs = Runtime.getRuntime().availableProcessors();
+        String dir = "batch-output";
+        boolean report = false;
+        for (int i = 0; i < rest.size(); ++i) {
+            if (rest.get(i).equals("-j") && i + 1 < rest.size()) {
+                rest.remove(i);
+                jobs = Integer.parseInt(rest.remove(i--));
+            } else if (rest.get(i).equals("-w") && i + 1 < rest.size()) {
+                rest.remove(i);
+                dir = rest.remove(i--);
+            } else if (rest.get(i).equals("-r")) {
+                rest.remove(i--);
+                report = true;
+            }
+        }
+        final Options options = Options.parse(rest);
+        options.step = false; // No input to wait for
+        options.report = report;
+
+        ArrayList<String> files = new ArrayList<String>();
+        for (String path : rest)
+            collect(new File(path), files);
+
+        final File outDir = new File(dir);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(jobs, 1));
+        ArrayList<Future<Result>> results = new ArrayList<Future<Result>>();
+        try {
+            for (final String file : files)
+                results.add(pool.submit(() -> analyze(file, options, outDir)));
+
+            int failed = 0;
+            for (Future<Result> f : results) {
+                Result r = f.get();
+                System.out.println(r.file + ": " + r.summary);
+                if (r.failed)
+                    ++failed;
+            }
+            System.out.println(files.size() + " programs, " + failed + " failed");
+            if (failed > 0)
+                System.exit(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Add `f` if it is a file, or the .while files below it if it is a
+     * directory, in name order.
+     */
+    private static void collect(File f, List<String> files) {
+        if (!f.isDirectory()) {
+            files.add(f.getPath());
+            return;
+        }
+        File[] children = f.listFiles();
+        Arrays.sort(children);
+        for (File c : children)
+            if (c.isDirectory() || c.getName().endsWith(".while"))
+                collect(c, files);
+    }
+
+    /**
+     * Return the output file for `file` under `outDir`, keeping its
+     * relative path.
+     */
+    private static File output(String file, File outDir, String suffix) {
+        File out = outDir;
+        for (String part : new File(file).toPath().normalize().toString()
+                                                    .split("[/\\\\]"))
+            if (!part.isEmpty() && !part.equals("..") && !part.contains(":"))
+                out = new File(out, part);
+        return new File(out.getPath() + suffix);
+    }
+
+    /**
+     * Analyze one program and write its output, never throwing so one
+     * program cannot stop the others.
+     */
+    private static Result analyze(String file, Options options, File outDir) {
+        Result r = new Result();
+        r.file = file;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        Metrics metrics = new Metrics();
+        long start = System.nanoTime();
+        // Parse errors go to the output of the program, not to the error
+        // output the programs analyzed at the same time share
+        try (FileReader source = new FileReader(file)) {
+            Analysis<?> result = Analyzer.analyze(source, options, metrics, out, out);
+            r.summary = PrettyPrinter.termination(result) + ", " +
+                        metrics.getStates() + " states, " +
+                        (System.nanoTime() - start) / 1000000 + " ms";
+        } catch (ParseException e) {
+            r.summary = "parse error: " + e.getMessage();
+            r.failed = true;
+        } catch (Exception | StackOverflowError | OutOfMemoryError e) {
+            r.summary = "failed: " + e;
+            r.failed = true;
+        }
+        out.flush();
+
+        try {
+            File f = output(file, outDir, ".out");
+            f.getParentFile().mkdirs();
+            try (FileOutputStream w = new FileOutputStream(f)) {
+                bytes.writeTo(w);
+            }
+            if (options.report && !r.failed) {
+                try (PrintStream w = new PrintStream(output(file, outDir, ".json"))) {
+                    w.print(metrics.toJson(options.reportInfo(file)));
+                }
+            }
+        } catch (Exception e) {
+            r.summary += " (output not written: " + e + ")";
+            r.failed = true;
+        }
+        return r;
+    }
+}
@@ -0,0 +1,127 @@
+package semant;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Array;
+import java.util.HashMap;
+import semant.signexc.SignExc;
+import semant.signexc.TTExc;
+
+/**
+ * The results of an analysis as read back from a ResultCache. Variable
+ * lubs are stored by slot, so a cached result can be used for any
+ * program with the same fingerprint by giving its variable names.
+ */
+public class CachedAnalysis implements Analysis<SignExc> {
+
+    private static final String MAGIC = "absintwhile-result 1";
+
+    private int lastControlPoint;
+    private HashMap<String, SignExc>[] lubs;
+    private SignExc[] zVals;
+    private TTExc[] ttVals;
+    private boolean possiblyNormalTermination;
+    private boolean possiblyExceptionalTermination;
+
+    private CachedAnalysis() {
+    }
+
+    /**
+     * Write `a`, whose variables by slot are `variables`, to `out`.
+     */
+    public static void write(Analysis<SignExc> a, String[] variables, PrintStream out) {
+        out.println(MAGIC);
+        out.println(a.lastControlPoint() + " " + variables.length + " " +
+                    a.possiblyNormalTermination() + " " +
+                    a.possiblyExceptionalTermination());
+        write(a.getZLubs(), out);
+        write(a.getTTLubs(), out);
+        HashMap<String, SignExc>[] lubs = a.getVarLubs();
+        out.println(lubs.length);
+        for (HashMap<String, SignExc> vars : lubs) {
+            SignExc[] vals = new SignExc[variables.length];
+            for (int i = 0; i < vals.length; ++i)
+                vals[i] = vars.get(variables[i]);
+            write(vals, out);
+        }
+    }
+
+    private static void write(Enum<?>[] vals, PrintStream out) {
+        StringBuilder sb = new StringBuilder().append(vals.length);
+        for (Enum<?> v : vals)
+            sb.append(' ').append(v == null ? "-" : v.name());
+        out.println(sb);
+    }
+
+    /**
+     * Read a result written by write() for a program with the given
+     * variables by slot.
+     */
+    public static CachedAnalysis read(BufferedReader in, String[] variables)
+            throws IOException {
+        if (!MAGIC.equals(in.readLine()))
+            throw new IOException("Not a cached result");
+
+        CachedAnalysis a = new CachedAnalysis();
+        String[] header = in.readLine().split(" ");
+        a.lastControlPoint = Integer.parseInt(header[0]);
+        if (Integer.parseInt(header[1]) != variables.length)
+            throw new IOException("Cached result has other variables");
+        a.possiblyNormalTermination = Boolean.parseBoolean(header[2]);
+        a.possiblyExceptionalTermination = Boolean.parseBoolean(header[3]);
+
+        a.zVals = read(in.readLine(), SignExc.class);
+        a.ttVals = read(in.readLine(), TTExc.class);
+        a.lubs = Maps.newArray(Integer.parseInt(in.readLine()));
+        for (int i = 0; i < a.lubs.length; ++i) {
+            SignExc[] vals = read(in.readLine(), SignExc.class);
+            a.lubs[i] = new HashMap<String, SignExc>();
+            for (int j = 0; j < vals.length; ++j)
+                if (vals[j] != null)
+                    a.lubs[i].put(variables[j], vals[j]);
+        }
+        return a;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Enum<E>> E[] read(String line, Class<E> type)
+            throws IOException {
+        if (line == null)
+            throw new IOException("Truncated cached result");
+
+        String[] words = line.split(" ");
+        E[] vals = (E[]) Array.newInstance(type, Integer.parseInt(words[0]));
+        for (int i = 0; i < vals.length; ++i)
+            vals[i] = words[i + 1].equals("-") ? null : Enum.valueOf(type, words[i + 1]);
+        return vals;
+    }
+
+    public int lastControlPoint() {
+        return lastControlPoint;
+    }
+
+    public HashMap<String, SignExc>[] getVarLubs() {
+        return lubs;
+    }
+
+    public SignExc[] getZLubs() {
+        return zVals;
+    }
+
+    public TTExc[] getTTLubs() {
+        return ttVals;
+    }
+
+    public boolean possiblyNormalTermination() {
+        return possiblyNormalTermination;
+    }
+
+    public boolean possiblyExceptionalTermination() {
+        return possiblyExceptionalTermination;
+    }
+
+    public SignExc sign(SignExc a) {
+        return a;
+    }
+}
@@ -1,5 +1,7 @@
 package semant;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import semant.amsyntax.*;
 import semant.whilesyntax.*;
 
@@ -8,176 +10,178 @@ public class CompileVisitor implements WhileVisitor {
     // Unique id to be increased for each control point
     private int controlPoint = 0;
 
-    public Code visit(Compound compound) {
-        Code c = new Code();
-        c.addAll(compound.s1.accept(this));
-        c.addAll(compound.s2.accept(this));
-        return c;
+    // The program emitted so far, the parts of a Branch, Loop or Try
+    // follow it instead of being its operands. Equal instructions are
+    // shared.
+    private Emitter code = new Emitter();
+
+    // Children are visited by steps on a stack instead of recursively
+    private final Steps steps = new Steps();
+
+    // Dense slot per variable, in order of first occurrence
+    private HashMap<String, Integer> slots = new HashMap<String, Integer>();
+    private ArrayList<String> variables = new ArrayList<String>();
+
+    private int slot(String x) {
+        Integer slot = slots.get(x);
+        if (slot == null) {
+            slot = variables.size();
+            slots.put(x, slot);
+            variables.add(x);
+        }
+        return slot;
+    }
+
+    /**
+     * Return the variables of the compiled code indexed by slot.
+     */
+    public String[] getVariables() {
+        return variables.toArray(new String[variables.size()]);
+    }
+
+    /**
+     * Return the program emitted by visiting a statement.
+     */
+    public Program getProgram() {
+        return new Program(code, getVariables());
     }
 
-    public Code visit(Not not) {
-        Code c = new Code();
-        Inst inst = new Neg();
-        inst.stmControlPoint = controlPoint;
-        c.addAll(not.b.accept(this));
-        c.add(inst);
-        return c;
+    public void visit(Compound compound) {
+        Runnable[] visits = new Runnable[compound.statements().size()];
+        for (int i = 0; i < visits.length; ++i) {
+            Stm s = compound.statements().get(i);
+            visits[i] = () -> s.accept(this);
+        }
+        steps.then(visits);
     }
 
-    public Code visit(Conjunction and) {
-        Code c = new Code();
-        Inst inst = new And();
-        inst.stmControlPoint = controlPoint;
-        c.addAll(and.b2.accept(this));
-        c.addAll(and.b1.accept(this));
-        c.add(inst);
-        return c;
+    public void visit(Not not) {
+        Inst inst = new Neg(controlPoint);
+        steps.then(() -> not.b.accept(this),
+                   () -> code.emit(inst));
     }
 
-    public Code visit(Assignment assignment) {
-        Code c = new Code();
-        Inst inst = new Store(assignment.x.id);
+    public void visit(Conjunction and) {
+        Inst inst = new And(controlPoint);
+        steps.then(() -> and.b2.accept(this),
+                   () -> and.b1.accept(this),
+                   () -> code.emit(inst));
+    }
+
+    public void visit(Assignment assignment) {
+        int slot = slot(assignment.x.id);
         ++controlPoint;
         assignment.controlPoint = controlPoint;
-        inst.stmControlPoint = assignment.controlPoint;
-        c.addAll(assignment.a.accept(this));
-        c.add(inst);
-        return c;
+        Inst inst = new Store(assignment.x.id, slot, assignment.controlPoint);
+        steps.then(() -> assignment.a.accept(this),
+                   () -> code.emit(inst));
     }
 
-    public Code visit(Conditional conditional) {
-        Code c = new Code();
+    public void visit(Conditional conditional) {
         ++controlPoint;
         conditional.controlPoint = controlPoint;
-        c.addAll(conditional.b.accept(this));
-        Inst inst = new Branch(conditional.s1.accept(this),
-                conditional.s2.accept(this));
-        inst.stmControlPoint = conditional.controlPoint;
-        c.add(inst);
-        return c;
-    }
-
-    public Code visit(Equals equals) {
-        Code c = new Code();
-        Inst inst = new Eq();
-        inst.stmControlPoint = controlPoint;
-        c.addAll(equals.a2.accept(this));
-        c.addAll(equals.a1.accept(this));
-        c.add(inst);
-        return c;
-    }
-
-    public Code visit(FalseConst f) {
-        Code c = new Code();
-        Inst inst = new False();
-        inst.stmControlPoint = controlPoint;
-        c.add(inst);
-        return c;
-    }
-
-    public Code visit(LessThanEq lessthaneq) {
-        Code c = new Code();
-        Inst inst = new Le();
-        inst.stmControlPoint = controlPoint;
+        Inst inst = new Branch(conditional.controlPoint);
+        steps.then(() -> conditional.b.accept(this), () -> {
+            int pc = code.beginBranch(inst);
+            steps.then(() -> conditional.s1.accept(this),
+                       () -> code.elseBranch(pc),
+                       () -> conditional.s2.accept(this),
+                       () -> code.endBranch(pc));
+        });
+    }
+
+    public void visit(Equals equals) {
+        Inst inst = new Eq(controlPoint);
+        steps.then(() -> equals.a2.accept(this),
+                   () -> equals.a1.accept(this),
+                   () -> code.emit(inst));
+    }
+
+    public void visit(FalseConst f) {
+        Inst inst = new False(controlPoint);
+        code.emit(inst);
+    }
+
+    public void visit(LessThanEq lessthaneq) {
+        Inst inst = new Le(controlPoint);
         // Not commutative
-        c.addAll(lessthaneq.a2.accept(this));
-        c.addAll(lessthaneq.a1.accept(this));
-        c.add(inst);
-        return c;
+        steps.then(() -> lessthaneq.a2.accept(this),
+                   () -> lessthaneq.a1.accept(this),
+                   () -> code.emit(inst));
     }
 
-    public Code visit(Minus minus) {
-        Code c = new Code();
-        Inst inst = new Sub();
-        inst.stmControlPoint = controlPoint;
+    public void visit(Minus minus) {
+        Inst inst = new Sub(controlPoint);
         // Not commutative
-        c.addAll(minus.a2.accept(this));
-        c.addAll(minus.a1.accept(this));
-        c.add(inst);
-        return c;
+        steps.then(() -> minus.a2.accept(this),
+                   () -> minus.a1.accept(this),
+                   () -> code.emit(inst));
     }
 
-    public Code visit(Num num) {
-        Code c = new Code();
-        Inst inst = new Push(num.n);
-        inst.stmControlPoint = controlPoint;
-        c.add(inst);
-        return c;
+    public void visit(Num num) {
+        Inst inst = new Push(num.n, controlPoint);
+        code.emit(inst);
     }
 
-    public Code visit(Plus plus) {
-        Code c = new Code();
-        Inst inst = new Add();
-        inst.stmControlPoint = controlPoint;
-        c.addAll(plus.a2.accept(this));
-        c.addAll(plus.a1.accept(this));
-        c.add(inst);
-        return c;
+    public void visit(Plus plus) {
+        Inst inst = new Add(controlPoint);
+        steps.then(() -> plus.a2.accept(this),
+                   () -> plus.a1.accept(this),
+                   () -> code.emit(inst));
     }
 
-    public Code visit(Skip skip) {
-        Code c = new Code();
-        Inst inst = new Noop();
+    public void visit(Skip skip) {
+        Inst inst = new Noop(controlPoint);
         skip.controlPoint = controlPoint;
-        inst.stmControlPoint = controlPoint;
-        c.add(inst);
-        return c;
+        code.emit(inst);
     }
 
-    public Code visit(Times times) {
-        Code c = new Code();
-        Inst inst = new Mult();
-        inst.stmControlPoint = controlPoint;
-        c.addAll(times.a2.accept(this));
-        c.addAll(times.a1.accept(this));
-        c.add(inst);
-        return c;
+    public void visit(Times times) {
+        Inst inst = new Mult(controlPoint);
+        steps.then(() -> times.a2.accept(this),
+                   () -> times.a1.accept(this),
+                   () -> code.emit(inst));
     }
 
-    public Code visit(TrueConst t) {
-        Code c = new Code();
-        Inst inst = new True();
-        inst.stmControlPoint = controlPoint;
-        c.add(inst);
-        return c;
+    public void visit(TrueConst t) {
+        Inst inst = new True(controlPoint);
+        code.emit(inst);
     }
 
-    public Code visit(Var var) {
-        Code c = new Code();
-        Inst inst = new Fetch(var.id);
-        inst.stmControlPoint = controlPoint;
-        c.add(inst);
-        return c;
+    public void visit(Var var) {
+        Inst inst = new Fetch(var.id, slot(var.id), controlPoint);
+        code.emit(inst);
     }
 
-    public Code visit(While whyle) {
-        Code c = new Code();
+    public void visit(While whyle) {
         ++controlPoint;
         whyle.controlPoint = controlPoint;
-        Inst inst = new Loop(whyle.b.accept(this), whyle.s.accept(this));
-        inst.stmControlPoint = whyle.controlPoint;
-        c.add(inst);
-        return c;
+        Inst inst = new Loop(whyle.controlPoint);
+        int pc = code.beginLoop(inst);
+        steps.then(() -> whyle.b.accept(this), () -> {
+            int b = code.loopBody(pc);
+            steps.then(() -> whyle.s.accept(this),
+                       () -> code.endLoop(pc, b));
+        });
     }
 
-    public Code visit(TryCatch trycatch) {
-        Code c = new Code();
+    public void visit(TryCatch trycatch) {
         ++controlPoint;
         trycatch.controlPoint = controlPoint;
-        Inst inst = new Try(trycatch.s1.accept(this), trycatch.s2.accept(this));
-        inst.stmControlPoint = trycatch.controlPoint;
-        c.add(inst);
-        return c;
+        Inst inst = new Try(trycatch.controlPoint);
+        code.beginTry(inst);
+        steps.then(() -> trycatch.s1.accept(this), () -> {
+            int h = code.catchTry();
+            steps.then(() -> trycatch.s2.accept(this),
+                       () -> code.endTry(h));
+        });
     }
 
-    public Code visit(Divide div) {
-        Code c = new Code();
-        Inst inst = new Div();
-        inst.stmControlPoint = controlPoint;
+    public void visit(Divide div) {
+        Inst inst = new Div(controlPoint);
         // Not commutative
-        c.addAll(div.a2.accept(this));
-        c.addAll(div.a1.accept(this));
-        c.add(inst);
-        return c;
+        steps.then(() -> div.a2.accept(this),
+                   () -> div.a1.accept(this),
+                   () -> code.emit(inst));
     }
 }
@@ -1,23 +1,37 @@
 package semant;
 
-import java.util.HashMap;
-import java.util.ListIterator;
-import java.util.Map;
-import java.util.Stack;
-import semant.amsyntax.Code;
-import semant.signexc.SignExc;
+import java.nio.ByteBuffer;
+import semant.amsyntax.Program;
+import semant.signexc.SignExcDomain;
 
 public class Configuration {
 
-    private HashMap<String, SignExc> symTable;
-    private Stack<Enum<?>> stack;
-    private Code code;
+    // All parts are immutable and shared between clones,
+    // an update replaces the part with a new version.
+    private SymbolTable symTable;
+    private Cons stack;         // Values as encoded by the Domain
+    private int pc;
     private boolean exceptional;
+    private int exceptionDepth; // Try depth where the exception was raised
 
-    public Configuration() {
-        symTable = new HashMap<String, SignExc>();
-        stack = new Stack<Enum<?>>();
+    /**
+     * Create a configuration with the given number of four bit variable
+     * slots.
+     */
+    public Configuration(int variables) {
+        this(variables, 4);
+    }
+
+    /**
+     * Create a configuration with the given number of variable slots
+     * of the given number of bits.
+     */
+    public Configuration(int variables, int bits) {
+        symTable = new SymbolTable(variables, bits);
+        stack = null;
+        pc = 0;
         exceptional = false;
+        exceptionDepth = 0;
     }
 
     /**
@@ -25,17 +39,15 @@ public class Configuration {
      * i.e. a configuration with the same
      * state, stack, and machine code.
      */
-    @SuppressWarnings("unchecked")
     public Configuration clone() {
-        Configuration clone = new Configuration();
-        // clone state
-        clone.symTable = (HashMap<String, SignExc>) symTable.clone();
-        // clone stack
-        clone.stack = (Stack<Enum<?>>) stack.clone();
-        // clone code
-        clone.code = (Code) code.clone();
+        Configuration clone = new Configuration(0, symTable.bits());
+        // share state and stack
+        clone.symTable = symTable;
+        clone.stack = stack;
+        clone.pc = pc;
         // clone exceptional state
-        clone.setExceptional(exceptional);
+        clone.exceptional = exceptional;
+        clone.exceptionDepth = exceptionDepth;
         return clone;
     }
 
@@ -43,7 +55,8 @@ public class Configuration {
      * Return the hashCode for this configuration.
      */
     public int hashCode() {
-        return symTable.hashCode() ^ stack.hashCode() ^ code.hashCode();
+        return symTable.hashCode() ^ Cons.hashCode(stack) ^ pc
+               ^ (exceptionDepth << 16);
     }
 
     /**
@@ -54,67 +67,88 @@ public class Configuration {
             return false;
 
         Configuration oc = (Configuration) o;
-        return oc.symTable.equals(symTable) && oc.stack.equals(stack)
-               && oc.code.equals(code) && (exceptional == oc.isExceptional());
+        return oc.symTable.equals(symTable) && Cons.equals(oc.stack, stack)
+               && oc.pc == pc && (exceptional == oc.isExceptional())
+               && exceptionDepth == oc.exceptionDepth;
+    }
+
+    /**
+     * Set the program counter of this configuration.
+     */
+    public void setPc(int pc) {
+        this.pc = pc;
     }
 
     /**
-     * Set the code of this configuration.
+     * Get the program counter of this configuration.
      */
-    public void setCode(Code c) {
-        code = c;
+    public int getPc() {
+        return pc;
     }
 
     /**
-     * Get the code of this configuration.
+     * Set the value of the variable in the given slot.
      */
-    public Code getCode() {
-        return code;
+    public void setVar(int slot, int val) {
+        symTable = symTable.setBits(slot, val);
     }
 
     /**
-     * Set the value of the given variable.
+     * Get the value of the variable in the given slot, setting it to
+     * `unknown` first if it is unset.
      */
-    public void setVar(String var, SignExc val) {
-        symTable.put(var, val);
+    public int getVar(int slot, int unknown) {
+        if (symTable.getBits(slot) == 0)
+            setVar(slot, unknown);
+
+        return symTable.getBits(slot);
+    }
+
+    /**
+     * Replace the values of all variables with those of `symTable`.
+     */
+    public void setSymTable(SymbolTable symTable) {
+        this.symTable = symTable;
     }
 
     /**
-     * Get the value of the given variable.
+     * Return a copy of this configuration for a program with the given
+     * number of variable slots.
      */
-    public SignExc getVar(String var) {
-        if (symTable.get(var) == null)
-            setVar(var, SignExc.Z);
-        
-        return symTable.get(var);
+    public Configuration resize(int variables) {
+        Configuration c = clone();
+        c.symTable = symTable.resize(variables);
+        return c;
     }
 
     /**
      * Get the symbol table.
      */
-    public HashMap<String, SignExc> getSymTable() {
+    public SymbolTable getSymTable() {
         return symTable;
     }
 
     /**
      * Push the given value on the stack.
      */
-    public void pushStack(Enum<?> val) {
-        stack.push(val);
+    public void pushStack(int val) {
+        stack = new Cons(val, stack);
     }
 
     /**
      * Pop one value from the stack.
      */
-    public Enum<?> popStack() {
-        return stack.pop();
+    public int popStack() {
+        int val = stack.head;
+        stack = stack.tail;
+        return val;
     }
 
     /**
      * Return the top value of the stack without popping.
      */
-    public Enum<?> getStackTop() {
-        return stack.peek();
+    public int getStackTop() {
+        return stack.head;
     }
 
     /**
@@ -129,28 +163,107 @@ public class Configuration {
      */
     public void setExceptional(boolean exceptional) {
         this.exceptional = exceptional;
+        if (!exceptional)
+            exceptionDepth = 0;
+    }
+
+    /**
+     * Return the number of Try bodies that enclosed the instruction
+     * raising the exception of this configuration.
+     */
+    public int getExceptionDepth() {
+        return exceptionDepth;
+    }
+
+    /**
+     * Set the Try depth where the exception of this configuration
+     * was raised.
+     */
+    public void setExceptionDepth(int depth) {
+        exceptionDepth = depth;
+    }
+
+    /**
+     * Write this configuration to `buf` in a compact form that is
+     * equal for equal configurations of the same program.
+     */
+    public void encode(ByteBuffer buf) {
+        buf.putInt(pc);
+        buf.putInt(exceptional ? exceptionDepth : -1);
+        for (int i = 0; i < symTable.words(); ++i)
+            buf.putLong(symTable.word(i));
+        int size = 0;
+        for (Cons s = stack; s != null; s = s.tail)
+            ++size;
+        buf.putShort((short) size);
+        // Values that fit a slot of a byte also fit a byte on the stack
+        boolean bytes = symTable.bits() <= 8;
+        for (Cons s = stack; s != null; s = s.tail) {
+            if (bytes)
+                buf.put((byte) s.head);
+            else
+                buf.putInt(s.head);
+        }
+    }
+
+    /**
+     * Read a configuration with the given number of four bit variable
+     * slots written by encode().
+     */
+    public static Configuration decode(ByteBuffer buf, int variables) {
+        return decode(buf, variables, 4);
+    }
+
+    /**
+     * Read a configuration with the given number of variable slots of
+     * the given number of bits written by encode().
+     */
+    public static Configuration decode(ByteBuffer buf, int variables, int bits) {
+        Configuration conf = new Configuration(variables, bits);
+        conf.pc = buf.getInt();
+        int depth = buf.getInt();
+        conf.exceptional = depth >= 0;
+        conf.exceptionDepth = Math.max(depth, 0);
+        long[] words = new long[conf.symTable.words()];
+        for (int i = 0; i < words.length; ++i)
+            words[i] = buf.getLong();
+        conf.symTable = new SymbolTable(words, variables, bits);
+        int[] vals = new int[buf.getShort()];
+        for (int i = 0; i < vals.length; ++i)
+            vals[i] = bits <= 8 ? buf.get() : buf.getInt();
+        for (int i = vals.length - 1; i >= 0; --i)
+            conf.pushStack(vals[i]);
+        return conf;
     }
 
     /**
      * Return a string representation of this configuration.
      */
     public String toString() {
+        return toString(null, SignExcDomain.INSTANCE);
+    }
+
+    /**
+     * Return a string representation of this configuration, naming
+     * the variables as in the given program if it is not `null` and
+     * the values as in the given domain.
+     */
+    public String toString(Program program, Domain<?> domain) {
         StringBuilder sb = new StringBuilder();
 
         sb.append("========== Symbol Table ==========\n");
-        for (Map.Entry<String, SignExc> entry : symTable.entrySet()) {
-            String var = entry.getKey();
-            SignExc val = entry.getValue();
-            sb.append(var + ": " + val + "\n");
+        for (int i = 0; i < symTable.slots(); ++i) {
+            String var = program != null ? program.variable(i) : "#" + i;
+            int val = symTable.getBits(i);
+            if (val != 0)
+                sb.append(var + ": " + domain.toString(val) + "\n");
         }
 
         sb.append("\n");
 
         sb.append("======== Stack (Top-Down) ========\n");
-        // Java's stack iterator is reversed
-        for (ListIterator<Enum<?>> it = stack.listIterator(stack.size());
-                it.hasPrevious();) {
-            sb.append(it.previous() + "\n");
+        for (Cons s = stack; s != null; s = s.tail) {
+            sb.append(domain.toString(s.head) + "\n");
         }
 
         return sb.toString();
@@ -0,0 +1,48 @@
+package semant;
+
+/**
+ * An immutable singly linked list of ints, the empty list being
+ * `null`. Lists built on the same tail share its cells, so pushing and
+ * popping never copy. Hash codes are computed once per cell.
+ */
+public final class Cons {
+
+    public final int head;
+    public final Cons tail;
+    private final int hash;
+
+    public Cons(int head, Cons tail) {
+        this.head = head;
+        this.tail = tail;
+        hash = 31 * hashCode(tail) + head;
+    }
+
+    /**
+     * Return the hash code of `list`, which may be empty.
+     */
+    public static int hashCode(Cons list) {
+        return list == null ? 1 : list.hash;
+    }
+
+    /**
+     * Check if two lists, which may be empty, have equal elements.
+     */
+    public static boolean equals(Cons a, Cons b) {
+        while (a != b) {
+            if (a == null || b == null || a.hash != b.hash
+                    || a.head != b.head)
+                return false;
+            a = a.tail;
+            b = b.tail;
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        return hash;
+    }
+
+    public boolean equals(Object o) {
+        return o instanceof Cons && equals(this, (Cons) o);
+    }
+}
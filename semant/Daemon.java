@@ -0,0 +1,209 @@
+package semant;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Serves analysis requests in one long-running JVM, on standard input
+ * and output or on a local socket, so every request after the first
+ * runs on warm parser tables and JIT compiled code.
+ *
+ * Usage: Daemon [-port n] [-j threads]
+ *
+ * A request is a header line followed by the program and a line with
+ * a single dot:
+ *
+ *     analyze <id> [flags]
+ *     <program>
+ *     .
+ *
+ * The flags are those of Main, except -s and -r. With `-i <name>` the
+ * program is taken as a new version of the one last analyzed with the
+ * same name, and the states before the first instruction that differs
+ * are reused. This is prefix reuse only: everything from that
+ * instruction on, including unchanged statements after the edit, and
+ * everything in a loop the edit is in, is explored again. Requests are
+ * analyzed concurrently, and each gets a response once done, in any
+ * order:
+ *
+ *     <id> ok <states> <millis> <termination>
+ *     <annotated program>
+ *     .
+ *
+ * or `<id> error <message>` followed by any error output and a dot
+ * line. Lines of a program or output starting with a dot get another
+ * dot in front, which the reader removes.
+ */
+public class Daemon {
+
+    private static final String WARM_UP =
+        "x := 7; try x := x - 7; x := 7 / x; x := x + 7 catch x := x - 7\n";
+
+    private static final int DOCUMENTS = 16; // Analyses kept for -i
+
+    private final ExecutorService pool;      // Runs the analyses
+    private final LinkedHashMap<String, Analysis<?>> documents; // By name, LRU
+
+    public Daemon(int threads) {
+        pool = Executors.newFixedThreadPool(threads);
+        documents = new LinkedHashMap<String, Analysis<?>>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<String, Analysis<?>> e) {
+                return size() > DOCUMENTS;
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i + 1 < args.length; ++i) {
+            if (args[i].equals("-port")) port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("-j")) threads = Integer.parseInt(args[++i]);
+        }
+
+        Daemon daemon = new Daemon(Math.max(threads, 1));
+        daemon.warmUp();
+        if (port < 0)
+            daemon.serve(new BufferedReader(new InputStreamReader(System.in)),
+                         System.out);
+        else
+            daemon.listen(port);
+        daemon.pool.shutdown();
+    }
+
+    /**
+     * Analyze a small program a few times so the first request does
+     * not pay for class loading and the parser tables.
+     */
+    private void warmUp() {
+        for (int i = 0; i < 20; ++i)
+            analyze("warm-up", new String[0], WARM_UP);
+    }
+
+    /**
+     * Accept connections on the loopback interface and serve each of
+     * them on its own thread.
+     */
+    private void listen(int port) throws IOException {
+        try (ServerSocket server =
+                 new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            System.err.println("Listening on port " + server.getLocalPort());
+            while (true) {
+                final Socket socket = server.accept();
+                new Thread(() -> {
+                    try (Socket s = socket) {
+                        serve(new BufferedReader(
+                                  new InputStreamReader(s.getInputStream())),
+                              new PrintStream(s.getOutputStream(), true));
+                    } catch (Exception e) {
+                        System.err.println("Connection failed: " + e);
+                    }
+                }).start();
+            }
+        }
+    }
+
+    /**
+     * Read requests from `in` until it ends, analyze them on the pool
+     * and write the responses to `out`. Return once all responses are
+     * written.
+     */
+    public void serve(BufferedReader in, PrintStream out) throws Exception {
+        ArrayList<Future<?>> pending = new ArrayList<Future<?>>();
+        String header;
+        while ((header = in.readLine()) != null) {
+            if (header.trim().isEmpty())
+                continue;
+
+            String[] words = header.trim().split("\\s+");
+            StringBuilder program = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null && !line.equals("."))
+                program.append(line.startsWith("..") ? line.substring(1) : line)
+                       .append('\n');
+
+            if (!words[0].equals("analyze") || words.length < 2) {
+                respond(out, "- error Unknown request: " + header, "");
+                continue;
+            }
+
+            final String id = words[1];
+            final String[] flags = Arrays.copyOfRange(words, 2, words.length);
+            final String source = program.toString();
+            pending.add(pool.submit(() -> {
+                String[] response = analyze(id, flags, source);
+                respond(out, response[0], response[1]);
+            }));
+        }
+        for (Future<?> f : pending)
+            f.get();
+    }
+
+    /**
+     * Analyze one program, return the response header and body.
+     */
+    private String[] analyze(String id, String[] flags, String source) {
+        Options options = Options.parse(new ArrayList<String>(Arrays.asList(flags)));
+        options.step = false;   // No input to wait for
+        options.report = false; // Nowhere to write it
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bytes);
+        Metrics metrics = new Metrics();
+        long start = System.nanoTime();
+        String header;
+        try {
+            Analysis<?> previous = null;
+            if (options.document != null)
+                synchronized (documents) {
+                    previous = documents.get(options.document);
+                }
+            Analysis<?> result = Analyzer.analyze(new StringReader(source), options,
+                                               metrics, out, out, previous);
+            if (options.document != null)
+                synchronized (documents) {
+                    documents.put(options.document, result);
+                }
+            header = id + " ok " + metrics.getStates() + " " +
+                     (System.nanoTime() - start) / 1000000 + " " +
+                     PrettyPrinter.termination(result);
+        } catch (ParseException e) {
+            header = id + " error " + e.getMessage();
+        } catch (Exception | StackOverflowError | OutOfMemoryError e) {
+            header = id + " error " + e;
+        }
+        out.flush();
+        return new String[] { header, bytes.toString() };
+    }
+
+    /**
+     * Write one response, dot stuffing its body.
+     */
+    private static void respond(PrintStream out, String header, String body) {
+        StringBuilder sb = new StringBuilder(header).append('\n');
+        if (body.endsWith("\n"))
+            body = body.substring(0, body.length() - 1);
+        if (!body.isEmpty())
+            for (String line : body.split("\n", -1))
+                sb.append(line.startsWith(".") ? "." + line : line).append('\n');
+        sb.append(".\n");
+        synchronized (out) {
+            out.print(sb);
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package semant;
+
+import semant.signexc.SignExc;
+
+/**
+ * An abstract domain the VM can run on: IntOperations and lattices
+ * over values encoded as ints, and the values `A` the results are
+ * given in. Truth values are the TTExc values of SignExcBits in every
+ * domain, and an integer value is 0 for NONE_A, so that a SymbolTable
+ * slot of 0 stands for unset.
+ */
+public interface Domain<A> extends IntOperations {
+
+    /**
+     * Return the lattice of integer values.
+     */
+    public IntLattice zLattice();
+
+    /**
+     * Return the lattice of truth values.
+     */
+    public IntLattice ttLattice();
+
+    /**
+     * Return the number of bits a value takes in a SymbolTable slot.
+     */
+    public int bits();
+
+    /**
+     * Return the value of a variable read before it is assigned.
+     */
+    public int unknown();
+
+    /**
+     * Return whether the lub of integer values is the union of their
+     * bits, so that whole words of slots can be joined at once.
+     */
+    public boolean joinsByUnion();
+
+    /**
+     * Return whether the domain has infinite ascending chains, so that
+     * loop heads have to be widened for the exploration to terminate.
+     */
+    public boolean widens();
+
+    /**
+     * Return an upper bound of `a1` and `a2` that, applied along an
+     * ascending chain, makes it stabilize.
+     */
+    public int widen(int a1, int a2);
+
+    /**
+     * Return a value between `a2` and `a1`, which is above it, that,
+     * applied along a descending chain, makes it stabilize.
+     */
+    public int narrow(int a1, int a2);
+
+    /**
+     * Return the integers that are at most, or if `strict` less than,
+     * some integer of `a`.
+     */
+    public int atMost(int a, boolean strict);
+
+    /**
+     * Return the integers that are at least, or if `strict` greater
+     * than, some integer of `a`.
+     */
+    public int atLeast(int a, boolean strict);
+
+    /**
+     * Return the values of `a` that may differ from some integer of
+     * `b`.
+     */
+    public int exclude(int a, int b);
+
+    /**
+     * Return the result form of the integer value `a`.
+     */
+    public A value(int a);
+
+    /**
+     * Return a new array of results.
+     */
+    public A[] newArray(int n);
+
+    /**
+     * Return the SignExc that `a` abstracts to.
+     */
+    public SignExc sign(A a);
+
+    /**
+     * Return the name of the value `v` of either kind.
+     */
+    public String toString(int v);
+}
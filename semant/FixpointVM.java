@@ -0,0 +1,405 @@
+package semant;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Stack;
+import semant.amsyntax.*;
+import semant.signexc.*;
+
+/**
+ * Dataflow variant of the VM. Instead of exploring every distinct
+ * configuration it keeps a single joined abstract state per program
+ * point (and per exceptional depth) and iterates to a fixpoint, so
+ * memory is bounded by program points times variables.
+ */
+public class FixpointVM implements Analysis<SignExc> {
+
+    private boolean debug;                   // Print every step
+    private PrintStream out;                 // Where debug output goes
+
+    private SignExcOps op;                   // Type of operations to use
+    private SignExcLattice zLattice;         // Type lattice for Z
+    private TTExcLattice ttLattice;          // Type lattice for TT
+    private Program program;                 // Code to execute
+    private int slots;                       // Normal state + one per Try depth
+    private State[][] states;                // Joined state per pc and slot
+    private LinkedList<Integer> worklist;    // Pending (pc, slot) pairs
+    private boolean[] pending;               // Whether a pair is in the worklist
+    private SignExc[] zVals;                 // Lubs of Z
+    private TTExc[] ttVals;                  // Lubs of TT
+    private HashMap<String, SignExc>[] lubs; // Lubs of vars
+    private int maxControlPoint;             // Highest control point
+    private boolean possiblyNormalTermination;
+    private boolean possiblyExceptionalTermination;
+
+    public FixpointVM(Program program, boolean debug) {
+        this.debug                     = debug;
+        out                            = System.out;
+        op                             = new SignExcOps();
+        zLattice                       = new SignExcLattice();
+        ttLattice                      = new TTExcLattice();
+        this.program                   = program;
+        slots                          = program.maxDepth() + 2;
+        states                         = new State[program.size() + 1][slots];
+        worklist                       = new LinkedList<Integer>();
+        pending                        = new boolean[states.length * slots];
+        maxControlPoint                = 0;
+        possiblyNormalTermination      = false;
+        possiblyExceptionalTermination = false;
+    }
+
+    /**
+     * The joined abstract state of all paths reaching a pc.
+     */
+    private static class State {
+        HashMap<String, SignExc> vars = new HashMap<String, SignExc>();
+        HashSet<String> partial = new HashSet<String>(); // Unset on some path
+        Stack<Enum<?>> stack = new Stack<Enum<?>>();
+
+        @SuppressWarnings("unchecked")
+        State copy() {
+            State s = new State();
+            s.vars = (HashMap<String, SignExc>) vars.clone();
+            s.partial = (HashSet<String>) partial.clone();
+            s.stack = (Stack<Enum<?>>) stack.clone();
+            return s;
+        }
+    }
+
+    /**
+     * Return the value of `x` in `s`, initializing it as the VM does.
+     */
+    private SignExc fetch(State s, String x) {
+        SignExc a = s.vars.get(x);
+        if (a == null)
+            a = SignExc.Z;
+        else if (s.partial.remove(x))
+            a = zLattice.lub(a, SignExc.Z);
+        s.vars.put(x, a);
+        return a;
+    }
+
+    /**
+     * Join `s` into `into`, return whether `into` changed.
+     */
+    private boolean join(State into, State s) {
+        boolean changed = false;
+
+        for (Map.Entry<String, SignExc> e : s.vars.entrySet()) {
+            SignExc a = into.vars.get(e.getKey());
+            if (a == null) {
+                into.vars.put(e.getKey(), e.getValue());
+                into.partial.add(e.getKey());
+                changed = true;
+            } else if (zLattice.lub(a, e.getValue()) != a) {
+                into.vars.put(e.getKey(), zLattice.lub(a, e.getValue()));
+                changed = true;
+            }
+        }
+        for (String x : into.vars.keySet())
+            if (!s.vars.containsKey(x))
+                changed |= into.partial.add(x);
+        changed |= into.partial.addAll(s.partial);
+
+        for (int i = 0; i < into.stack.size(); ++i) {
+            Enum<?> v = into.stack.get(i), w = s.stack.get(i), j;
+            if (v instanceof SignExc)
+                j = zLattice.lub((SignExc) v, (SignExc) w);
+            else
+                j = ttLattice.lub((TTExc) v, (TTExc) w);
+            if (j != v) {
+                into.stack.set(i, j);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Join `s` into the state of `pc` at `slot` and schedule the
+     * pair if anything changed.
+     */
+    private void propagate(int pc, int slot, State s) {
+        if (states[pc][slot] == null)
+            states[pc][slot] = s;
+        else if (!join(states[pc][slot], s))
+            return;
+
+        int key = pc * slots + slot;
+        if (!pending[key]) {
+            pending[key] = true;
+            worklist.add(key);
+        }
+    }
+
+    /**
+     * Apply the instruction at `pc` to its state at `slot`, where
+     * slot 0 is the normal state and slot d+1 the state of an exception
+     * raised at Try depth d.
+     */
+    private void step(int pc, int slot) {
+        Inst inst = program.inst(pc);
+        int next = program.next(pc);
+        State s = states[pc][slot].copy();
+        boolean exceptional = slot != 0;
+        int raised = exceptional ? slot : program.depth(pc) + 1;
+
+        if (debug) {
+            out.println("> " + inst.opcode + " (pc: " + pc +
+                    ", ctrl: " + inst.stmControlPoint + ", slot: " + slot + ")");
+            out.println("Vars: " + s.vars + " Stack: " + s.stack);
+        }
+
+        State t;
+        SignExc a, a1, a2;
+        TTExc b, b1, b2;
+        switch (inst.opcode) {
+            case ADD:
+                a1 = (SignExc) s.stack.pop();
+                a2 = (SignExc) s.stack.pop();
+                s.stack.push(op.add(a1, a2));
+                propagate(next, slot, s);
+                break;
+            case AND:
+                b1 = (TTExc) s.stack.pop();
+                b2 = (TTExc) s.stack.pop();
+                s.stack.push(op.and(b1, b2));
+                propagate(next, slot, s);
+                break;
+            case BRANCH:
+                b = (TTExc) s.stack.pop();
+                if (op.possiblyBErr(b))
+                    propagate(program.exit(pc), raised, s.copy());
+                if (op.possiblyTrue(b))
+                    propagate(next, slot, s.copy());
+                if (op.possiblyFalse(b))
+                    propagate(program.alt(pc), slot, s.copy());
+                break;
+            case EQ:
+                a1 = (SignExc) s.stack.pop();
+                a2 = (SignExc) s.stack.pop();
+                s.stack.push(op.eq(a1, a2));
+                propagate(next, slot, s);
+                break;
+            case FALSE:
+                s.stack.push(op.abs(false));
+                propagate(next, slot, s);
+                break;
+            case FETCH:
+                s.stack.push(fetch(s, ((Fetch) inst).x));
+                propagate(next, slot, s);
+                break;
+            case LE:
+                a1 = (SignExc) s.stack.pop();
+                a2 = (SignExc) s.stack.pop();
+                s.stack.push(op.leq(a1, a2));
+                propagate(next, slot, s);
+                break;
+            case LOOP:
+            case NOOP:
+                propagate(next, slot, s);
+                break;
+            case MULT:
+                a1 = (SignExc) s.stack.pop();
+                a2 = (SignExc) s.stack.pop();
+                s.stack.push(op.multiply(a1, a2));
+                propagate(next, slot, s);
+                break;
+            case NEG:
+                b = (TTExc) s.stack.pop();
+                s.stack.push(op.neg(b));
+                propagate(next, slot, s);
+                break;
+            case PUSH:
+                s.stack.push(op.abs(((Push) inst).getValue()));
+                propagate(next, slot, s);
+                break;
+            case STORE:
+                String x = ((Store) inst).x;
+                a = (SignExc) s.stack.pop();
+                if (op.possiblyAErr(a)) {
+                    t = s.copy();
+                    fetch(t, x);
+                    propagate(next, raised, t);
+                }
+                if (op.possiblyInt(a)) {
+                    t = s.copy();
+                    if (!exceptional) {
+                        t.vars.put(x, a);
+                        t.partial.remove(x);
+                    } else {
+                        fetch(t, x);
+                    }
+                    propagate(next, slot, t);
+                }
+                if (a == SignExc.NONE_A)
+                    propagate(next, slot, s.copy());
+                break;
+            case SUB:
+                a1 = (SignExc) s.stack.pop();
+                a2 = (SignExc) s.stack.pop();
+                s.stack.push(op.subtract(a1, a2));
+                propagate(next, slot, s);
+                break;
+            case TRUE:
+                s.stack.push(op.abs(true));
+                propagate(next, slot, s);
+                break;
+            case DIV:
+                a1 = (SignExc) s.stack.pop();
+                a2 = (SignExc) s.stack.pop();
+                s.stack.push(op.divide(a1, a2));
+                propagate(next, slot, s);
+                break;
+            case TRY:
+                // Catch the exceptions raised inside this Try only
+                if (program.isHandler(pc) && slot == program.depth(pc) + 1) {
+                    if (debug) out.println("CATCH EXCEPTION");
+                    slot = 0;
+                }
+                propagate(next, slot, s);
+                break;
+            default:
+                throw new IllegalStateException("Invalid opcode " + inst.opcode);
+        }
+    }
+
+    /**
+     * Write the debug output to `out` instead of standard output.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Execute the entire program by iterating to a fixpoint.
+     */
+    public void execute() {
+        states[0][0] = new State();
+        pending[0] = true;
+        worklist.add(0);
+
+        while (!worklist.isEmpty()) {
+            int key = worklist.removeFirst();
+            pending[key] = false;
+            if (key / slots != program.size())
+                step(key / slots, key % slots);
+        }
+
+        // Every control point gets lubs, reached or not
+        for (int pc = 0; pc < program.size(); ++pc)
+            maxControlPoint = Math.max(maxControlPoint, program.inst(pc).stmControlPoint);
+        ++maxControlPoint; // Since last control point will have no instructions left
+
+        if (debug) out.println("Max control point: " + maxControlPoint);
+        if (debug) out.println(">>> END");
+    }
+
+    /**
+     * Compute the least upper bounds.
+     */
+    public void computeLubs() {
+        lubs = Maps.newArray(maxControlPoint);
+        zVals  = new SignExc[maxControlPoint];
+        ttVals = new TTExc[maxControlPoint];
+
+        for (int i = 0; i < lubs.length; ++i)
+            lubs[i] = new HashMap<String, SignExc>();
+
+        for (int pc = 0; pc <= program.size(); ++pc) {
+            Inst inst = pc != program.size() ? program.inst(pc) : null;
+            int cp = inst == null ? maxControlPoint - 1 :
+                inst.stmControlPoint - 1;
+
+            for (int slot = 0; slot < slots; ++slot) {
+                State s = states[pc][slot];
+                if (s == null) continue;
+
+                // Check if the program exited normally
+                if (cp == maxControlPoint - 1) {
+                    if (slot == 0)
+                        possiblyNormalTermination = true;
+                    else
+                        possiblyExceptionalTermination = true;
+                }
+
+                if (inst instanceof Store) {
+                    SignExc a = (SignExc) s.stack.peek();
+                    zVals[cp] = zVals[cp] != null ?
+                        zLattice.lub(zVals[cp], a) : a;
+                }
+                if (inst instanceof Branch) {
+                    TTExc b = (TTExc) s.stack.peek();
+                    ttVals[cp] = ttVals[cp] != null ?
+                        ttLattice.lub(ttVals[cp], b) : b;
+                }
+
+                for (Map.Entry<String, SignExc> e : s.vars.entrySet()) {
+                    SignExc a = lubs[cp].get(e.getKey());
+                    lubs[cp].put(e.getKey(), a != null ?
+                            zLattice.lub(a, e.getValue()) : e.getValue());
+                }
+            }
+        }
+        // Make sure all variables exist at all control points
+        HashSet<String> names = new HashSet<String>();
+        for (HashMap<String, SignExc> vars : lubs)
+            names.addAll(vars.keySet());
+        for (int i = 0; i < lubs.length-1; i++)
+            for (String x : names)
+                lubs[i].putIfAbsent(x, SignExc.Z);
+    }
+
+    /**
+     * Return the number of last control point
+     */
+    public int lastControlPoint() {
+        return maxControlPoint;
+    }
+
+    /**
+     * Return the least upper bounds of variables.
+     */
+    public HashMap<String, SignExc>[] getVarLubs() {
+        return lubs;
+    }
+
+    /**
+     * Return the least upper bouds of the Z values.
+     */
+    public SignExc[] getZLubs() {
+        return zVals;
+    }
+
+    /**
+     * Return the least upper bouds of the TT values.
+     */
+    public TTExc[] getTTLubs() {
+        return ttVals;
+    }
+
+    /**
+     * Return whether the program exited normally (possibly).
+     */
+    public boolean possiblyNormalTermination() {
+        return possiblyNormalTermination;
+    }
+
+    /**
+     * Return whether the program exited exceptionally (possibly).
+     */
+    public boolean possiblyExceptionalTermination() {
+        return possiblyExceptionalTermination;
+    }
+
+    /**
+     * Return the SignExc that the value `a` abstracts to, itself.
+     */
+    public SignExc sign(SignExc a) {
+        return a;
+    }
+}
@@ -0,0 +1,147 @@
+package semant;
+
+import semant.amsyntax.*;
+import semant.amsyntax.Inst.Opcode;
+
+/**
+ * Narrows the variables of a configuration taking one edge of a BRANCH
+ * to the values that make its guard come out that way. The guard of
+ * every BRANCH is read back from the postfix code in front of it, and
+ * comparisons of a variable with an expression are refined by the glb
+ * with what the Domain says the comparison allows. An edge is
+ * infeasible if a variable has no value left.
+ */
+public class GuardRefiner {
+
+    /**
+     * A node of a guard, the operands in the order they are popped.
+     */
+    private static class Node {
+        final Inst inst;
+        final Node a1, a2;
+
+        Node(Inst inst, Node a1, Node a2) {
+            this.inst = inst;
+            this.a1   = a1;
+            this.a2   = a2;
+        }
+    }
+
+    private final Domain<?> domain;
+    private final Node[] guards;      // Guard by BRANCH pc, else null
+    private int start;                // Where the last node read starts
+
+    public GuardRefiner(Program program, Domain<?> domain) {
+        this.domain = domain;
+        guards = new Node[program.size()];
+        for (int pc = 0; pc < program.size(); ++pc)
+            if (program.inst(pc).opcode == Opcode.BRANCH)
+                guards[pc] = read(program, pc - 1);
+    }
+
+    /**
+     * Return the expression whose code ends at `pc`, or `null` if
+     * there is none.
+     */
+    private Node read(Program program, int pc) {
+        if (pc < 0)
+            return null;
+
+        Inst inst = program.inst(pc);
+        Node a1, a2;
+        switch (inst.opcode) {
+            case FETCH: case PUSH: case TRUE: case FALSE:
+                start = pc;
+                return new Node(inst, null, null);
+            case NEG:
+                a1 = read(program, pc - 1);
+                return a1 != null ? new Node(inst, a1, null) : null;
+            case ADD: case SUB: case MULT: case DIV: case EQ: case LE: case AND:
+                // The first operand popped is pushed last
+                a1 = read(program, pc - 1);
+                a2 = a1 != null ? read(program, start - 1) : null;
+                return a2 != null ? new Node(inst, a1, a2) : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Return the value of `e` with the variables in `vars`.
+     */
+    private int eval(Node e, SymbolTable vars) {
+        switch (e.inst.opcode) {
+            case FETCH:
+                int a = vars.getBits(((Fetch) e.inst).slot);
+                return a != 0 ? a : domain.unknown();
+            case PUSH:  return domain.abs(((Push) e.inst).getValue());
+            case TRUE:  return domain.abs(true);
+            case FALSE: return domain.abs(false);
+            case NEG:   return domain.neg(eval(e.a1, vars));
+            case ADD:   return domain.add(eval(e.a1, vars), eval(e.a2, vars));
+            case SUB:   return domain.subtract(eval(e.a1, vars), eval(e.a2, vars));
+            case MULT:  return domain.multiply(eval(e.a1, vars), eval(e.a2, vars));
+            case DIV:   return domain.divide(eval(e.a1, vars), eval(e.a2, vars));
+            case EQ:    return domain.eq(eval(e.a1, vars), eval(e.a2, vars));
+            case LE:    return domain.leq(eval(e.a1, vars), eval(e.a2, vars));
+            case AND:   return domain.and(eval(e.a1, vars), eval(e.a2, vars));
+            default:
+                throw new IllegalStateException("Invalid opcode " + e.inst.opcode);
+        }
+    }
+
+    /**
+     * Narrow the variables of `conf`, which takes the edge of the
+     * BRANCH at `pc` where its guard is `truth`. Return `false` if
+     * no values of the variables take that edge.
+     */
+    public boolean refine(Configuration conf, int pc, boolean truth) {
+        Node guard = guards[pc];
+        return guard == null || refine(conf, guard, truth);
+    }
+
+    private boolean refine(Configuration conf, Node e, boolean truth) {
+        switch (e.inst.opcode) {
+            case NEG:
+                return refine(conf, e.a1, !truth);
+            case AND:
+                // Either conjunct may be false
+                return !truth || refine(conf, e.a1, true) && refine(conf, e.a2, true);
+            case LE:
+            case EQ:
+                break;
+            default:
+                return true;
+        }
+
+        SymbolTable vars = conf.getSymTable();
+        int a1 = eval(e.a1, vars), a2 = eval(e.a2, vars);
+        int r1, r2;
+        if (e.inst.opcode == Opcode.EQ) {
+            r1 = truth ? a2 : domain.exclude(a1, a2);
+            r2 = truth ? a1 : domain.exclude(a2, a1);
+        } else {
+            // a1 <= a2, or a2 < a1
+            r1 = truth ? domain.atMost(a2, false) : domain.atLeast(a2, true);
+            r2 = truth ? domain.atLeast(a1, false) : domain.atMost(a1, true);
+        }
+        return narrow(conf, e.a1, r1) && narrow(conf, e.a2, r2);
+    }
+
+    /**
+     * Narrow the variable `e`, if it is one, to the integers in `r`.
+     * Return `false` if it has no value left.
+     */
+    private boolean narrow(Configuration conf, Node e, int r) {
+        if (e.inst.opcode != Opcode.FETCH)
+            return true;
+
+        int slot = ((Fetch) e.inst).slot;
+        int a = conf.getVar(slot, domain.unknown());
+        int n = domain.zLattice().glb(a, r);
+        if (!domain.possiblyInt(n))
+            return false;
+        conf.setVar(slot, n);
+        return true;
+    }
+}
@@ -0,0 +1,18 @@
+package semant;
+
+/**
+ * A Lattice over values encoded as ints, for use without boxing.
+ */
+public abstract class IntLattice {
+
+    public final int join;
+    public final int meet;
+
+    protected IntLattice(int join, int meet) {
+        this.join = join;
+        this.meet = meet;
+    }
+
+    public abstract int lub(int a1, int a2);
+    public abstract int glb(int a1, int a2);
+}
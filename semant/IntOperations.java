@@ -0,0 +1,29 @@
+package semant;
+
+/**
+ * Operations over arithmetic and boolean values encoded as ints, for
+ * use without boxing.
+ */
+public interface IntOperations {
+
+    public int abs(int z);
+    public int abs(boolean b);
+
+    public int add(int a1, int a2);
+    public int subtract(int a1, int a2);
+    public int multiply(int a1, int a2);
+    public int divide(int a1, int a2);
+    public int eq(int a1, int a2);
+    public int leq(int a1, int a2);
+    public int and(int b1, int b2);
+    public int neg(int b);
+
+    public boolean possiblyAErr(int a);
+    public boolean possiblyBErr(int b);
+    public boolean possiblyTrue(int b);
+    public boolean possiblyFalse(int b);
+    public boolean possiblyInt(int a);
+
+    public boolean isInt(int a);
+    public boolean isNone(int a);
+}
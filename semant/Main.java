@@ -1,40 +1,42 @@
 package semant;
 
-import semant.amsyntax.Code;
-import semant.amsyntax.Inst;
-import semant.whilesyntax.Stm;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 public class Main {
 
-    private static boolean DEBUG = false;
-    private static boolean STEP  = false;
-
     public static void main(String[] args) throws Exception {
-        if (args.length > 1 && args[1].equals("-d")) DEBUG = true;
-        if (args.length > 2 && args[2].equals("-s")) STEP = true;
-
-        // Generate While AST
-        Stm s = WhileParser.parse(args[0]);
-
-        // Compile s into AM Code AST
-        Code am = s.accept(new CompileVisitor());
-
-        if (DEBUG) {
-            System.out.println("============== Code ==============");
-            for (Inst inst : am) System.out.println(inst);
-            System.out.println();
-            System.out.println(">>> START");
+        Options options = Options.parse(
+            new ArrayList<String>(Arrays.asList(args).subList(1, args.length)));
+        Metrics metrics = new Metrics();
+
+        try {
+            Analyzer.analyze(args[0], options, metrics, System.out);
+        } catch (ParseException e) {
+            // The parser has reported the errors
+            System.exit(-1);
         }
 
-        // Run the program and compute least upper bounds
-        VM vm = new VM(am, DEBUG, STEP);
-        vm.execute();
-        vm.computeLubs();
+        if (options.report)
+            report(args[0], options, metrics);
+    }
 
-        // Pretty print the program with annotations
-        PrettyPrinter p = new PrettyPrinter(vm);
-        s.accept(p);
-        p.printTermination();
-        System.out.println();
+    /**
+     * Write the metrics of the run as JSON to the report file, or to
+     * standard error if none was given.
+     */
+    private static void report(String file, Options options, Metrics metrics)
+            throws IOException {
+        String json = metrics.toJson(options.reportInfo(file));
+
+        if (options.reportFile == null) {
+            System.err.print(json);
+        } else {
+            try (FileWriter w = new FileWriter(options.reportFile)) {
+                w.write(json);
+            }
+        }
     }
 }
@@ -0,0 +1,20 @@
+package semant;
+
+import java.util.HashMap;
+
+/**
+ * Arrays of HashMaps, which Java cannot create with type arguments.
+ */
+final class Maps {
+
+    private Maps() {
+    }
+
+    /**
+     * Return an array of `n` maps, all `null`.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> HashMap<K, V>[] newArray(int n) {
+        return (HashMap<K, V>[]) new HashMap<?, ?>[n];
+    }
+}
@@ -0,0 +1,179 @@
+package semant;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import semant.amsyntax.Inst.Opcode;
+
+/**
+ * Counters of what the VM did while exploring, plus the time spent in
+ * each phase of a run. Counting is thread safe so parallel exploration
+ * can share one instance.
+ */
+public class Metrics {
+
+    private final LongAdder states      = new LongAdder(); // Distinct configurations
+    private final LongAdder generated   = new LongAdder(); // Successors of steps
+    private final LongAdder duplicates  = new LongAdder(); // Already visited
+    private final LongAdder clones      = new LongAdder(); // Configuration clones
+    private final LongAdder subsumed    = new LongAdder(); // Below a visited one
+    private final LongAdder summaryHits = new LongAdder(); // Blocks stepped over
+    private final AtomicLongArray steps =
+        new AtomicLongArray(Opcode.values().length);       // Steps by opcode
+    private final AtomicInteger queued    = new AtomicInteger();
+    private final AtomicInteger peakQueue = new AtomicInteger();
+    private final LinkedHashMap<String, Long> phases =
+        new LinkedHashMap<String, Long>();                 // Nanoseconds by phase
+
+    /**
+     * Count a step of the instruction with the given opcode.
+     */
+    public void step(Opcode opcode) {
+        steps.incrementAndGet(opcode.ordinal());
+    }
+
+    /**
+     * Count the successors of a step.
+     */
+    public void generated(int n) {
+        generated.add(n);
+    }
+
+    /**
+     * Count a configuration reached, `fresh` if it was not visited.
+     */
+    public void visited(boolean fresh) {
+        if (fresh)
+            states.increment();
+        else
+            duplicates.increment();
+    }
+
+    /**
+     * Count a configuration not visited, or not stepped, as one
+     * visited is above it.
+     */
+    public void subsumed() {
+        subsumed.increment();
+    }
+
+    /**
+     * Count a block stepped over with a summary computed before.
+     */
+    public void summaryHit() {
+        summaryHits.increment();
+    }
+
+    /**
+     * Count a clone of a configuration.
+     */
+    public void cloned() {
+        clones.increment();
+    }
+
+    /**
+     * Count a configuration waiting to be stepped.
+     */
+    public void enqueue() {
+        int n = queued.incrementAndGet();
+        peakQueue.accumulateAndGet(n, Math::max);
+    }
+
+    /**
+     * Count a configuration no longer waiting to be stepped.
+     */
+    public void dequeue() {
+        queued.decrementAndGet();
+    }
+
+    /**
+     * Record the time spent in a phase, starting at `start` from
+     * System.nanoTime().
+     */
+    public synchronized void phase(String name, long start) {
+        phases.put(name, System.nanoTime() - start);
+    }
+
+    public long getStates() {
+        return states.sum();
+    }
+
+    public long getGenerated() {
+        return generated.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getClones() {
+        return clones.sum();
+    }
+
+    public long getSubsumed() {
+        return subsumed.sum();
+    }
+
+    public long getSummaryHits() {
+        return summaryHits.sum();
+    }
+
+    public int getPeakQueue() {
+        return peakQueue.get();
+    }
+
+    public long getSteps(Opcode opcode) {
+        return steps.get(opcode.ordinal());
+    }
+
+    /**
+     * Return the counters as a JSON object, with the given string
+     * entries first and phase times in milliseconds.
+     */
+    public synchronized String toJson(Map<String, String> info) {
+        StringBuilder sb = new StringBuilder("{\n");
+        for (Map.Entry<String, String> e : info.entrySet())
+            sb.append("  " + quote(e.getKey()) + ": " + quote(e.getValue()) + ",\n");
+        sb.append("  \"states\": " + getStates() + ",\n");
+        sb.append("  \"generated\": " + getGenerated() + ",\n");
+        sb.append("  \"duplicates\": " + getDuplicates() + ",\n");
+        sb.append("  \"peakQueue\": " + getPeakQueue() + ",\n");
+        sb.append("  \"clones\": " + getClones() + ",\n");
+        sb.append("  \"subsumed\": " + getSubsumed() + ",\n");
+        sb.append("  \"summaryHits\": " + getSummaryHits() + ",\n");
+
+        sb.append("  \"steps\": {");
+        String sep = "";
+        for (Opcode opcode : Opcode.values()) {
+            sb.append(sep + quote(opcode.toString()) + ": " + getSteps(opcode));
+            sep = ", ";
+        }
+        sb.append("},\n");
+
+        sb.append("  \"phasesMs\": {");
+        sep = "";
+        for (Map.Entry<String, Long> e : phases.entrySet()) {
+            sb.append(sep + quote(e.getKey()) + ": " +
+                      String.format(Locale.ROOT, "%.3f", e.getValue() / 1e6));
+            sep = ", ";
+        }
+        sb.append("}\n}\n");
+        return sb.toString();
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < ' ')
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -0,0 +1,253 @@
+package semant;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set of configurations stored outside the Java heap. Every
+ * configuration is encoded to a few bytes and appended to direct
+ * buffers, and an open-addressing table with linear probing, also a
+ * direct buffer, holds the hash, length and address of each record.
+ * Configurations are only decoded again when iterating, so the number
+ * of states explored is bounded by -XX:MaxDirectMemorySize rather than
+ * by the heap. The table is split over buffers of SEGMENT entries, so
+ * it is not limited by the size of one buffer, and only the set as a
+ * Collection is limited to Integer.MAX_VALUE configurations. Adding
+ * and lookup are synchronized.
+ */
+public class OffHeapSet extends AbstractSet<Configuration> {
+
+    private static final int ENTRY = 16;          // Address, hash and length
+    private static final int SEGMENT = 1 << 26;   // Entries per table buffer
+    private static final int MIN_CHUNK = 1 << 16; // Bytes in the first record buffer
+    private static final int MAX_CHUNK = 1 << 26;
+
+    private final int variables;                  // Slots per configuration
+    private final int bits;                       // Bits per slot
+    private ByteBuffer[] table;                   // Entries, address 0 if empty
+    private long capacity;                        // Entries in the table
+    private int size;                             // Configurations in the set
+    private ArrayList<ByteBuffer> chunks;         // Records, appended in order
+    private ByteBuffer scratch;                   // The record being looked up
+
+    /**
+     * Create a set of configurations with the given number of four bit
+     * variable slots, sized to hold `capacity` configurations before
+     * growing.
+     */
+    public OffHeapSet(int variables, int capacity) {
+        this(variables, 4, capacity);
+    }
+
+    /**
+     * Create a set of configurations with the given number of variable
+     * slots of the given number of bits, sized as above.
+     */
+    public OffHeapSet(int variables, int bits, int capacity) {
+        this.variables = variables;
+        this.bits      = bits;
+        this.capacity  = 2;
+        while (this.capacity < 2L * capacity)
+            this.capacity *= 2;
+        table   = allocate(this.capacity);
+        size    = 0;
+        chunks  = new ArrayList<ByteBuffer>();
+        chunks.add(ByteBuffer.allocateDirect(MIN_CHUNK));
+        scratch = ByteBuffer.allocate(256);
+    }
+
+    /**
+     * Return a table of `capacity` empty entries.
+     */
+    private static ByteBuffer[] allocate(long capacity) {
+        ByteBuffer[] t = new ByteBuffer[(int) ((capacity + SEGMENT - 1) / SEGMENT)];
+        for (int k = 0; k < t.length; ++k)
+            t[k] = ByteBuffer.allocateDirect((int) Math.min(capacity, SEGMENT) * ENTRY);
+        return t;
+    }
+
+    /**
+     * Return the buffer holding entry `i` of table `t`.
+     */
+    private static ByteBuffer segment(ByteBuffer[] t, long i) {
+        return t[(int) (i / SEGMENT)];
+    }
+
+    /**
+     * Return the offset of entry `i` in its buffer.
+     */
+    private static int offset(long i) {
+        return (int) (i % SEGMENT) * ENTRY;
+    }
+
+    private static long address(ByteBuffer[] t, long i) {
+        return segment(t, i).getLong(offset(i));
+    }
+
+    private static int hash(ByteBuffer[] t, long i) {
+        return segment(t, i).getInt(offset(i) + 8);
+    }
+
+    private static int length(ByteBuffer[] t, long i) {
+        return segment(t, i).getInt(offset(i) + 12);
+    }
+
+    private static void put(ByteBuffer[] t, long i, long address, int hash, int length) {
+        ByteBuffer b = segment(t, i);
+        b.putLong(offset(i), address);
+        b.putInt(offset(i) + 8, hash);
+        b.putInt(offset(i) + 12, length);
+    }
+
+    /**
+     * Spread the bits of a configuration hash over the table index.
+     */
+    private static long spread(int hash) {
+        hash *= 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Encode `c` into the scratch buffer, growing it as needed.
+     */
+    private void encode(Configuration c) {
+        while (true) {
+            scratch.clear();
+            try {
+                c.encode(scratch);
+                scratch.flip();
+                return;
+            } catch (BufferOverflowException e) {
+                scratch = ByteBuffer.allocate(2 * scratch.capacity());
+            }
+        }
+    }
+
+    /**
+     * Return whether the record at `address` equals the scratch buffer.
+     */
+    private boolean sameRecord(long address) {
+        ByteBuffer chunk = chunks.get((int) (address >>> 32));
+        int offset = (int) address;
+        for (int i = 0; i < scratch.limit(); ++i)
+            if (chunk.get(offset + i) != scratch.get(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * Return the table index of the encoded configuration in the
+     * scratch buffer, or of the empty entry where it belongs.
+     */
+    private long find(int hash) {
+        long mask = capacity - 1;
+        for (long i = spread(hash) & mask;; i = (i + 1) & mask) {
+            long address = address(table, i);
+            if (address == 0 || (hash(table, i) == hash &&
+                                 length(table, i) == scratch.limit() &&
+                                 sameRecord(address - 1)))
+                return i;
+        }
+    }
+
+    /**
+     * Append the scratch buffer to the records, return its address.
+     */
+    private long append() {
+        ByteBuffer chunk = chunks.get(chunks.size() - 1);
+        if (chunk.remaining() < scratch.limit()) {
+            int bytes = Math.min(2 * chunk.capacity(), MAX_CHUNK);
+            while (bytes < scratch.limit())
+                bytes *= 2;
+            chunk = ByteBuffer.allocateDirect(bytes);
+            chunks.add(chunk);
+        }
+        long address = ((long) (chunks.size() - 1) << 32) | chunk.position();
+        chunk.put(scratch);
+        return address;
+    }
+
+    /**
+     * Double the table and reinsert all entries.
+     */
+    private void grow() {
+        ByteBuffer[] old = table;
+        long oldCapacity = capacity;
+        capacity *= 2;
+        table = allocate(capacity);
+        long mask = capacity - 1;
+        for (long j = 0; j < oldCapacity; ++j) {
+            long address = address(old, j);
+            if (address == 0)
+                continue;
+            long i = spread(hash(old, j)) & mask;
+            while (address(table, i) != 0)
+                i = (i + 1) & mask;
+            put(table, i, address, hash(old, j), length(old, j));
+        }
+    }
+
+    public synchronized boolean add(Configuration c) {
+        encode(c);
+        int hash = c.hashCode();
+        long i = find(hash);
+        if (address(table, i) != 0)
+            return false;
+        if (size == Integer.MAX_VALUE)
+            throw new IllegalStateException(
+                "Off-heap visited set is full at " + size + " configurations");
+
+        put(table, i, append() + 1, hash, scratch.limit());
+        if (2L * ++size > capacity)
+            grow();
+        return true;
+    }
+
+    public synchronized boolean contains(Object o) {
+        if (!(o instanceof Configuration))
+            return false;
+
+        Configuration c = (Configuration) o;
+        encode(c);
+        return address(table, find(c.hashCode())) != 0;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Return an iterator decoding the configurations in table order.
+     * The set must not be added to while iterating.
+     */
+    public Iterator<Configuration> iterator() {
+        return new Iterator<Configuration>() {
+            private long i = advance(0);
+
+            private long advance(long i) {
+                while (i < capacity && address(table, i) == 0)
+                    ++i;
+                return i;
+            }
+
+            public boolean hasNext() {
+                return i < capacity;
+            }
+
+            public Configuration next() {
+                if (i >= capacity)
+                    throw new NoSuchElementException();
+
+                long address = address(table, i) - 1;
+                ByteBuffer record = chunks.get((int) (address >>> 32)).duplicate();
+                record.position((int) address);
+                i = advance(i + 1);
+                return Configuration.decode(record, variables, bits);
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package semant;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import semant.interval.IntervalDomain;
+import semant.signexc.SignExcDomain;
+
+/**
+ * The options of one analysis, as given by command line flags.
+ */
+public class Options {
+
+    public boolean debug    = false; // Print the code and every step
+    public boolean step     = false; // Wait for input between steps
+    public boolean fixpoint = false; // Use the FixpointVM
+    public int     threads  = 0;     // Parallel workers, 0 for BFS
+    public int     offHeap  = 0;     // Off-heap visited set size, 0 for heap
+    public boolean report   = false; // Write a JSON report of the run
+    public String  reportFile = null;
+    public String  cacheDir   = null;              // Result cache, null for none
+    public long    cacheBytes = 64L << 20;         // Cache size limit
+    public long    cacheAge   = 7L * 24 * 3600000; // Cache age limit in ms
+    public String  document   = null;              // Name to reanalyze incrementally
+    public String  domain     = "signs";           // Abstract domain, see domain()
+    public boolean forgetDead = false;             // Forget variables never read again
+    public int     merge      = 0;                 // Configurations kept apart per join point, 0 for all
+    public boolean refine     = false;             // Narrow variables by BRANCH guards
+    public boolean subsume    = false;             // Only explore maximal configurations
+    public boolean blocks     = false;             // Step over basic blocks with summaries
+    public boolean atomic     = false;             // Evaluate expressions in one step
+
+    /**
+     * Remove the analysis flags from `args` and return the options
+     * they give, leaving any other arguments in place.
+     */
+    public static Options parse(List<String> args) {
+        Options o = new Options();
+        for (int i = 0; i < args.size(); ++i) {
+            String arg = args.get(i);
+            boolean flag = true;
+            if (arg.equals("-d")) o.debug = true;
+            else if (arg.equals("-s")) o.step = true;
+            else if (arg.equals("-f")) o.fixpoint = true;
+            else if (arg.equals("-l")) o.forgetDead = true;
+            else if (arg.equals("-g")) o.refine = true;
+            else if (arg.equals("-u")) o.subsume = true;
+            else if (arg.equals("-b")) o.blocks = true;
+            else if (arg.equals("-e")) o.atomic = true;
+            else if (arg.equals("-p")) {
+                // Optionally followed by the number of threads
+                o.threads = Runtime.getRuntime().availableProcessors();
+                if (i + 1 < args.size() && args.get(i + 1).matches("\\d+"))
+                    o.threads = Integer.parseInt(args.remove(i + 1));
+            } else if (arg.equals("-m")) {
+                // Optionally followed by the configurations kept apart
+                o.merge = 1;
+                if (i + 1 < args.size() && args.get(i + 1).matches("\\d+"))
+                    o.merge = Integer.parseInt(args.remove(i + 1));
+            } else if (arg.equals("-o")) {
+                // Optionally followed by the expected number of states
+                o.offHeap = 1 << 20;
+                if (i + 1 < args.size() && args.get(i + 1).matches("\\d+"))
+                    o.offHeap = Integer.parseInt(args.remove(i + 1));
+            } else if (arg.equals("-r")) {
+                // Optionally followed by the file to write the report to
+                o.report = true;
+                if (i + 1 < args.size() && !args.get(i + 1).startsWith("-"))
+                    o.reportFile = args.remove(i + 1);
+            } else if (arg.equals("-c")) {
+                // Optionally followed by the cache directory
+                o.cacheDir = ".absint-cache";
+                if (i + 1 < args.size() && !args.get(i + 1).startsWith("-"))
+                    o.cacheDir = args.remove(i + 1);
+            } else if (arg.equals("-cs") && i + 1 < args.size()) {
+                // Cache size limit in MB
+                o.cacheBytes = Long.parseLong(args.remove(i + 1)) << 20;
+            } else if (arg.equals("-ca") && i + 1 < args.size()) {
+                // Cache age limit in days
+                o.cacheAge = Long.parseLong(args.remove(i + 1)) * 24 * 3600000;
+            } else if (arg.equals("-a") && i + 1 < args.size()) {
+                // Abstract domain
+                o.domain = args.remove(i + 1);
+            } else if (arg.equals("-i") && i + 1 < args.size()) {
+                // Document whose last analysis to reuse
+                o.document = args.remove(i + 1);
+            } else {
+                flag = false;
+            }
+            if (flag)
+                args.remove(i--);
+        }
+        return o;
+    }
+
+    /**
+     * Return the options that affect the results, as part of the
+     * cache key. The ways of exploring every configuration give the
+     * same results, and so does subsumption, since a covered
+     * configuration only reaches states its cover reaches.
+     */
+    public String resultKey() {
+        String key = fixpoint ? "fixpoint" : "explore";
+        if (!fixpoint && forgetDead)
+            key += "-live";
+        if (!fixpoint && merge > 0)
+            key += "-merge" + merge;
+        if (!fixpoint && refine)
+            key += "-refine";
+        return domain.equals("signs") ? key : key + " " + domain;
+    }
+
+    /**
+     * Return the entries identifying a run on `program` with these
+     * options, which a JSON report starts with.
+     */
+    public LinkedHashMap<String, String> reportInfo(String program) {
+        LinkedHashMap<String, String> info = new LinkedHashMap<String, String>();
+        info.put("program", program);
+        info.put("mode", mode());
+        info.put("domain", domain);
+        return info;
+    }
+
+    /**
+     * Return a new instance of the abstract domain to explore with:
+     * "signs" for SignExc, or "intervals" for intervals widened at
+     * loop heads. The FixpointVM and the result cache only support
+     * SignExc.
+     */
+    public Domain<?> domain() {
+        if (domain.equals("signs"))
+            return SignExcDomain.INSTANCE;
+        if (domain.equals("intervals"))
+            return new IntervalDomain();
+        throw new IllegalArgumentException("Unknown domain " + domain);
+    }
+
+    /**
+     * Return the name of the exploration used.
+     */
+    public String mode() {
+        return fixpoint ? "fixpoint" : threads > 0 ? "parallel" : "bfs";
+    }
+}
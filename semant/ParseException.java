@@ -0,0 +1,14 @@
+package semant;
+
+/**
+ * Thrown by the WhileParser when a program cannot be parsed, after the
+ * errors have been reported.
+ */
+public class ParseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public ParseException(String msg) {
+        super(msg);
+    }
+}
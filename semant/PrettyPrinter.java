@@ -1,201 +1,205 @@
 package semant;
 
-import semant.amsyntax.Code;
 import semant.signexc.SignExc;
 import semant.signexc.TTExc;
 import semant.whilesyntax.*;
 import semant.signexc.*;
+import java.io.PrintStream;
 import java.util.HashMap;
 import java.util.Map;
 
 public class PrettyPrinter implements WhileVisitor {
 
-    private VM vm;
+    private Analysis<?> vm;
+    private PrintStream out;
 
     String i = "";
 
-    public PrettyPrinter(VM vm) {
+    // Children are visited by steps on a stack instead of recursively
+    private final Steps steps = new Steps();
+
+    public PrettyPrinter(Analysis<?> vm) {
+        this(vm, System.out);
+    }
+
+    /**
+     * Create a printer of the annotated program writing to `out`.
+     */
+    public PrettyPrinter(Analysis<?> vm, PrintStream out) {
         this.vm = vm;
+        this.out = out;
     }
 
-    public Code visit(Conjunction and) {
-        and.b1.accept(this);
-        System.out.print(" & ");
-        and.b2.accept(this);
-        return null;
+    public void visit(Conjunction and) {
+        steps.then(() -> and.b1.accept(this),
+                   () -> out.print(" & "),
+                   () -> and.b2.accept(this));
     }
 
-    public Code visit(Assignment assignment) {
+    public void visit(Assignment assignment) {
         printVars(assignment.controlPoint-1);
-        SignExc a = vm.getZLubs()[assignment.controlPoint - 1];
-        String s = a != null ? a.toString() : "never evaluated";
-        System.out.print(" Right-hand side: " + s);
+        Object v = vm.getZLubs()[assignment.controlPoint - 1];
+        SignExc a = sign(vm, assignment.controlPoint - 1);
+        String s = v != null ? v.toString() : "never evaluated";
+        out.print(" Right-hand side: " + s);
         if (a == SignExc.ERR_A)
-            System.out.print(" (Exception raiser!)");
+            out.print(" (Exception raiser!)");
         if (a == SignExc.ANY_A)
-            System.out.print(" (Possible exception raiser!)");
+            out.print(" (Possible exception raiser!)");
         if (a == SignExc.NONE_A)
-            System.out.print(" (Use of uninitialised variable!)");
-        System.out.println();
-        System.out.print(i);
-        assignment.x.accept(this);
-        System.out.print(" := ");
-        assignment.a.accept(this);
-        return null;
+            out.print(" (Use of uninitialised variable!)");
+        out.println();
+        out.print(i);
+        steps.then(() -> assignment.x.accept(this),
+                   () -> out.print(" := "),
+                   () -> assignment.a.accept(this));
     }
 
-    public Code visit(Compound compound) {
-        compound.s1.accept(this);
-        System.out.print(";");
-        compound.s2.accept(this);
-        return null;
+    public void visit(Compound compound) {
+        Runnable[] visits = new Runnable[2 * compound.statements().size() - 1];
+        for (int j = 0; j < visits.length; j += 2) {
+            Stm s = compound.statements().get(j / 2);
+            visits[j] = () -> s.accept(this);
+            if (j > 0)
+                visits[j - 1] = () -> out.print(";");
+        }
+        steps.then(visits);
     }
 
-    public Code visit(Conditional conditional) {
+    public void visit(Conditional conditional) {
         printVars(conditional.controlPoint-1);
         TTExc b = vm.getTTLubs()[conditional.controlPoint - 1];
-        System.out.print(" Boolean guard: " + b);
+        out.print(" Boolean guard: " + b);
         if (b == TTExc.FF || b == TTExc.TT)
-            System.out.print(" (Unreachable code!)");
+            out.print(" (Unreachable code!)");
         if (b == TTExc.ERR_B)
-            System.out.print(" (Exception raiser!)");
+            out.print(" (Exception raiser!)");
         if (b == TTExc.ANY_B)
-            System.out.print(" (Possible exception raiser!)");
+            out.print(" (Possible exception raiser!)");
         if (b == TTExc.NONE_B)
-            System.out.print(" (Use of uninitialised variable!)");
-        System.out.println();
-        System.out.print(i + "if ");
-        conditional.b.accept(this);
-        System.out.print(" then");
-        indent();
-        conditional.s1.accept(this);
-        outdent();
-        System.out.println();
-        System.out.print(i + "else");
-        indent();
-        conditional.s2.accept(this);
-        outdent();
-        return null;
+            out.print(" (Use of uninitialised variable!)");
+        out.println();
+        out.print(i + "if ");
+        steps.then(() -> conditional.b.accept(this),
+                   () -> out.print(" then"),
+                   () -> indent(),
+                   () -> conditional.s1.accept(this),
+                   () -> {
+                       outdent();
+                       out.println();
+                       out.print(i + "else");
+                       indent();
+                   },
+                   () -> conditional.s2.accept(this),
+                   () -> outdent());
     }
 
-    public Code visit(Equals equals) {
-        equals.a1.accept(this);
-        System.out.print(" = ");
-        equals.a2.accept(this);
-        return null;
+    public void visit(Equals equals) {
+        steps.then(() -> equals.a1.accept(this),
+                   () -> out.print(" = "),
+                   () -> equals.a2.accept(this));
     }
 
-    public Code visit(FalseConst f) {
-        System.out.print("false");
-        return null;
+    public void visit(FalseConst f) {
+        out.print("false");
     }
 
-    public Code visit(LessThanEq leq) {
-        leq.a1.accept(this);
-        System.out.print(" <= ");
-        leq.a2.accept(this);
-        return null;
+    public void visit(LessThanEq leq) {
+        steps.then(() -> leq.a1.accept(this),
+                   () -> out.print(" <= "),
+                   () -> leq.a2.accept(this));
     }
 
-    public Code visit(Minus minus) {
-        System.out.print("(");
-        minus.a1.accept(this);
-        System.out.print(" - ");
-        minus.a2.accept(this);
-        System.out.print(")");
-        return null;
+    public void visit(Minus minus) {
+        out.print("(");
+        steps.then(() -> minus.a1.accept(this),
+                   () -> out.print(" - "),
+                   () -> minus.a2.accept(this),
+                   () -> out.print(")"));
     }
 
-    public Code visit(Not not) {
-        System.out.print("!(");
-        not.b.accept(this);
-        System.out.print(")");
-        return null;
+    public void visit(Not not) {
+        out.print("!(");
+        steps.then(() -> not.b.accept(this),
+                   () -> out.print(")"));
     }
 
-    public Code visit(Num num) {
-        System.out.print(num.n);
-        return null;
+    public void visit(Num num) {
+        out.print(num.n);
     }
 
-    public Code visit(Plus plus) {
-        System.out.print("(");
-        plus.a1.accept(this);
-        System.out.print(" + ");
-        plus.a2.accept(this);
-        System.out.print(")");
-        return null;
+    public void visit(Plus plus) {
+        out.print("(");
+        steps.then(() -> plus.a1.accept(this),
+                   () -> out.print(" + "),
+                   () -> plus.a2.accept(this),
+                   () -> out.print(")"));
     }
 
-    public Code visit(Skip skip) {
-        System.out.println();
-        System.out.print(i + "skip");
-        return null;
+    public void visit(Skip skip) {
+        out.println();
+        out.print(i + "skip");
     }
 
-    public Code visit(Times times) {
-        System.out.print("(");
-        times.a1.accept(this);
-        System.out.print(" * ");
-        times.a2.accept(this);
-        System.out.print(")");
-        return null;
+    public void visit(Times times) {
+        out.print("(");
+        steps.then(() -> times.a1.accept(this),
+                   () -> out.print(" * "),
+                   () -> times.a2.accept(this),
+                   () -> out.print(")"));
     }
 
-    public Code visit(TrueConst t) {
-        System.out.print("true");
-        return null;
+    public void visit(TrueConst t) {
+        out.print("true");
     }
 
-    public Code visit(Var var) {
-        System.out.print(var.id);
-        return null;
+    public void visit(Var var) {
+        out.print(var.id);
     }
 
-    public Code visit(While whyle) {
+    public void visit(While whyle) {
         printVars(whyle.controlPoint-1);
         TTExc b = vm.getTTLubs()[whyle.controlPoint - 1];
-        System.out.print(" Boolean guard: " + b);
+        out.print(" Boolean guard: " + b);
         if (b == TTExc.FF)
-            System.out.print(" (Unreachable code!)");
+            out.print(" (Unreachable code!)");
         if (b == TTExc.ERR_B)
-            System.out.print(" (Exception raiser!)");
+            out.print(" (Exception raiser!)");
         if (b == TTExc.ANY_B)
-            System.out.print(" (Possible exception raiser!)");
+            out.print(" (Possible exception raiser!)");
         if (b == TTExc.NONE_B)
-            System.out.print(" (Use of uninitialised variable!)");
-        System.out.println();
-        System.out.print(i + "while ");
-        whyle.b.accept(this);
-        System.out.print(" do");
-        indent();
-        whyle.s.accept(this);
-        outdent();
-        return null;
+            out.print(" (Use of uninitialised variable!)");
+        out.println();
+        out.print(i + "while ");
+        steps.then(() -> whyle.b.accept(this),
+                   () -> out.print(" do"),
+                   () -> indent(),
+                   () -> whyle.s.accept(this),
+                   () -> outdent());
     }
 
-    public Code visit(Divide div) {
-        System.out.print("(");
-        div.a1.accept(this);
-        System.out.print(" / ");
-        div.a2.accept(this);
-        System.out.print(")");
-        return null;
+    public void visit(Divide div) {
+        out.print("(");
+        steps.then(() -> div.a1.accept(this),
+                   () -> out.print(" / "),
+                   () -> div.a2.accept(this),
+                   () -> out.print(")"));
     }
 
-    public Code visit(TryCatch trycatch) {
+    public void visit(TryCatch trycatch) {
         printVars(trycatch.controlPoint-1);
-        System.out.println();
-        System.out.print(i + "try");
-        indent();
-        trycatch.s1.accept(this);
-        outdent();
-        System.out.println();
-        System.out.print(i + "catch");
+        out.println();
+        out.print(i + "try");
         indent();
-        trycatch.s2.accept(this);
-        outdent();
-        return null;
+        steps.then(() -> trycatch.s1.accept(this),
+                   () -> {
+                       outdent();
+                       out.println();
+                       out.print(i + "catch");
+                       indent();
+                   },
+                   () -> trycatch.s2.accept(this),
+                   () -> outdent());
     }
 
     private void indent() {
@@ -206,31 +210,47 @@ public class PrettyPrinter implements WhileVisitor {
         i = i.substring(4);
     }
 
+    /**
+     * Return the SignExc the lub of Z at `cp` abstracts to, or `null`
+     * if it was never evaluated.
+     */
+    private static <A> SignExc sign(Analysis<A> vm, int cp) {
+        A a = vm.getZLubs()[cp];
+        return a != null ? vm.sign(a) : null;
+    }
+
     private void printVars(int cp) {
-        HashMap<String, SignExc> vars = vm.getVarLubs()[cp];
+        HashMap<String, ?> vars = vm.getVarLubs()[cp];
         StringBuilder sb = new StringBuilder();
         sb.append(i + "{");
 
-        for (Map.Entry<String, SignExc> e : vars.entrySet())
+        for (Map.Entry<String, ?> e : vars.entrySet())
             sb.append(e.getKey() + "=" + e.getValue() + ", ");
         if (!vars.isEmpty()) sb.setLength(sb.length()-2);
         sb.append("}");
-        System.out.println();
-        System.out.print(sb);
+        out.println();
+        out.print(sb);
     }
 
     public void printTermination() {
         printVars(vm.lastControlPoint()-1);
+        out.print(" (" + termination(vm) + ")");
+    }
+
+    /**
+     * Return how the analyzed program may terminate.
+     */
+    public static String termination(Analysis<?> vm) {
         if (vm.possiblyNormalTermination()) {
             if(vm.possiblyExceptionalTermination())
-                System.out.print(" (possibly exceptional termination)");
+                return "possibly exceptional termination";
             else
-                System.out.print(" (normal termination)");
+                return "normal termination";
         } else {
             if(vm.possiblyExceptionalTermination())
-                System.out.print(" (exceptional termination)");
+                return "exceptional termination";
             else
-                System.out.print(" (no termination)");
+                return "no termination";
         }
     }
 }
@@ -0,0 +1,105 @@
+package semant;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import semant.signexc.SignExc;
+
+/**
+ * A directory of analysis results named by the fingerprint of the
+ * program and options that produced them. Files are written to a
+ * temporary name and moved into place, so several processes may share
+ * the directory. A hit refreshes the age of its file; after every
+ * store, files older than the age limit are removed and then the
+ * oldest ones until the directory is within the size limit.
+ */
+public class ResultCache {
+
+    private static final String SUFFIX = ".result";
+
+    private final File dir;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+
+    public ResultCache(File dir, long maxBytes, long maxAgeMillis) {
+        this.dir          = dir;
+        this.maxBytes     = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    private File file(String key) {
+        return new File(dir, key + SUFFIX);
+    }
+
+    /**
+     * Return the result stored under `key` for a program with the given
+     * variables by slot, or `null` if there is none.
+     */
+    public Analysis<SignExc> load(String key, String[] variables) {
+        File f = file(key);
+        try (BufferedReader in = new BufferedReader(new FileReader(f))) {
+            Analysis<SignExc> a = CachedAnalysis.read(in, variables);
+            f.setLastModified(System.currentTimeMillis());
+            return a;
+        } catch (IOException | RuntimeException e) {
+            // Missing, evicted meanwhile or unreadable, analyze again
+            return null;
+        }
+    }
+
+    /**
+     * Store `a`, the result for a program with the given variables by
+     * slot, under `key` and evict old results.
+     */
+    public void store(String key, Analysis<SignExc> a, String[] variables)
+            throws IOException {
+        dir.mkdirs();
+        File tmp = File.createTempFile(key, ".tmp", dir);
+        try {
+            try (PrintStream out = new PrintStream(tmp)) {
+                CachedAnalysis.write(a, variables, out);
+            }
+            Files.move(tmp.toPath(), file(key).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+        evict();
+    }
+
+    /**
+     * Remove results older than the age limit, then the least recently
+     * used ones until the rest fit in the size limit.
+     */
+    public void evict() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null)
+            return;
+
+        long now = System.currentTimeMillis();
+        long[] modified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        long bytes = 0;
+        for (int i = 0; i < files.length; ++i) {
+            modified[i] = files[i].lastModified();
+            order[i] = i;
+            bytes += files[i].length();
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+
+        for (int i : order) {
+            if (now - modified[i] <= maxAgeMillis && bytes <= maxBytes)
+                break;
+            long length = files[i].length();
+            if (files[i].delete())
+                bytes -= length;
+        }
+    }
+}
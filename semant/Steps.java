@@ -0,0 +1,35 @@
+package semant;
+
+import java.util.ArrayDeque;
+
+/**
+ * The pending steps of a traversal, on an explicit stack so that deeply
+ * nested programs do not overflow the thread stack. A visitor schedules
+ * the steps of a node, visiting its children among them, instead of
+ * taking them, and the outermost visit runs them all.
+ */
+final class Steps {
+
+    private final ArrayDeque<Runnable> stack = new ArrayDeque<Runnable>();
+    private boolean running;
+
+    /**
+     * Schedule `steps` in order before those scheduled earlier, and run
+     * them unless a traversal is already running.
+     */
+    void then(Runnable... steps) {
+        for (int i = steps.length - 1; i >= 0; --i)
+            stack.push(steps[i]);
+        if (running)
+            return;
+
+        running = true;
+        try {
+            while (!stack.isEmpty())
+                stack.pop().run();
+        } finally {
+            running = false;
+            stack.clear();
+        }
+    }
+}
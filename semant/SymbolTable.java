@@ -0,0 +1,208 @@
+package semant;
+
+import java.util.Arrays;
+import semant.signexc.SignExc;
+import semant.signexc.SignExcBits;
+
+/**
+ * An immutable map from variable slots to abstract values, packed into
+ * longs a fixed number of bits per slot, four for SignExcBits by
+ * default. Values are 0 for NONE_A, which no variable is assigned, so
+ * 0 stands for unset. Updating returns a new table, so configurations
+ * may share a table for as long as they do not change it.
+ */
+public final class SymbolTable {
+
+    private static final int SIGN_BITS = 4;
+
+    private final long[] words;
+    private final int slots;
+    private final int bits;     // Bits per slot, dividing 64
+    private final int hash;
+
+    /**
+     * Create a table with the given number of four bit slots, all
+     * unset.
+     */
+    public SymbolTable(int slots) {
+        this(slots, SIGN_BITS);
+    }
+
+    /**
+     * Create a table with the given number of slots of the given
+     * number of bits, all unset.
+     */
+    public SymbolTable(int slots, int bits) {
+        this(new long[words(slots, bits)], slots, bits);
+    }
+
+    /**
+     * Create a table from packed four bit slots, which it takes
+     * ownership of.
+     */
+    SymbolTable(long[] words, int slots) {
+        this(words, slots, SIGN_BITS);
+    }
+
+    /**
+     * Create a table from packed slots, which it takes ownership of.
+     */
+    SymbolTable(long[] words, int slots, int bits) {
+        this.words = words;
+        this.slots = slots;
+        this.bits  = bits;
+        hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * Return the number of longs `slots` slots of `bits` bits are
+     * packed into.
+     */
+    static int words(int slots, int bits) {
+        int perWord = 64 / bits;
+        return (slots + perWord - 1) / perWord;
+    }
+
+    /**
+     * Return the value in the given slot of packed slots.
+     */
+    static int get(long[] words, int bits, int slot) {
+        int perWord = 64 / bits;
+        long mask = -1L >>> (64 - bits);
+        return (int) (words[slot / perWord] >>> (bits * (slot % perWord)) & mask);
+    }
+
+    /**
+     * Set the value in the given slot of packed slots.
+     */
+    static void put(long[] words, int bits, int slot, int val) {
+        int perWord = 64 / bits, i = slot / perWord, shift = bits * (slot % perWord);
+        long mask = -1L >>> (64 - bits);
+        words[i] = (words[i] & ~(mask << shift)) | ((val & mask) << shift);
+    }
+
+    /**
+     * Return the value in the given slot, or `null` if it is unset.
+     * Only for four bit slots.
+     */
+    public SignExc get(int slot) {
+        int bits = getBits(slot);
+        return bits == 0 ? null : SignExcBits.signExc(bits);
+    }
+
+    /**
+     * Return the value in the given slot, 0 if it is unset.
+     */
+    public int getBits(int slot) {
+        return get(words, bits, slot);
+    }
+
+    /**
+     * Return a table where the given slot has the given value.
+     * Only for four bit slots.
+     */
+    public SymbolTable set(int slot, SignExc val) {
+        return setBits(slot, SignExcBits.of(val));
+    }
+
+    /**
+     * Return a table where the given slot has the given value.
+     */
+    public SymbolTable setBits(int slot, int val) {
+        if (getBits(slot) == val)
+            return this;
+
+        long[] ws = words.clone();
+        put(ws, bits, slot, val);
+        return new SymbolTable(ws, slots, bits);
+    }
+
+    /**
+     * Return a table where those of the given slots that are set have
+     * the given value.
+     */
+    public SymbolTable overwrite(int[] slots, int val) {
+        long[] ws = null;
+        for (int slot : slots) {
+            int old = getBits(slot);
+            if (old != 0 && old != val) {
+                if (ws == null)
+                    ws = words.clone();
+                put(ws, bits, slot, val);
+            }
+        }
+        return ws != null ? new SymbolTable(ws, this.slots, bits) : this;
+    }
+
+    /**
+     * Return a table where the given slots have the values of those
+     * in `from`, or are unset where they are.
+     */
+    public SymbolTable copy(int[] slots, SymbolTable from) {
+        long[] ws = null;
+        for (int slot : slots) {
+            int val = from.getBits(slot);
+            if (getBits(slot) != val) {
+                if (ws == null)
+                    ws = words.clone();
+                put(ws, bits, slot, val);
+            }
+        }
+        return ws != null ? new SymbolTable(ws, this.slots, bits) : this;
+    }
+
+    /**
+     * Return a table with the given number of slots, keeping the
+     * values of the slots both have.
+     */
+    public SymbolTable resize(int n) {
+        if (n == slots)
+            return this;
+
+        int perWord = 64 / bits;
+        long[] ws = Arrays.copyOf(words, words(n, bits));
+        if (n < slots && n % perWord != 0)
+            ws[ws.length - 1] &= (1L << (bits * (n % perWord))) - 1;
+        return new SymbolTable(ws, n, bits);
+    }
+
+    /**
+     * Return the number of longs the slots are packed into.
+     */
+    public int words() {
+        return words.length;
+    }
+
+    /**
+     * Return the i:th long of packed slots.
+     */
+    public long word(int i) {
+        return words[i];
+    }
+
+    /**
+     * Return the number of slots.
+     */
+    public int slots() {
+        return slots;
+    }
+
+    /**
+     * Return the number of bits per slot.
+     */
+    public int bits() {
+        return bits;
+    }
+
+    public int hashCode() {
+        return hash;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof SymbolTable))
+            return false;
+
+        SymbolTable ot = (SymbolTable) o;
+        return ot == this || (ot.hash == hash && Arrays.equals(ot.words, words));
+    }
+}
@@ -3,249 +3,381 @@ package semant;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
 import semant.amsyntax.*;
 import semant.signexc.*;
 
-public class VM {
+/**
+ * Explores every distinct configuration reachable in a Program, with
+ * values in the given Domain and the results in its values `A`.
+ */
+public class VM<A> implements Analysis<A> {
 
-    private static boolean DEBUG;
-    private static boolean STEP;
+    private static final int WIDEN_DELAY = 3; // Joins at a loop head before widening
+    private static final int NARROWINGS  = 3; // Passes narrowing the loop heads
 
-    private SignExcOps op;                   // Type of operations to use
-    private SignExcLattice zLattice;         // Type lattice for Z
-    private TTExcLattice ttLattice;          // Type lattice for TT
-    private HashSet<Configuration> visited;  // Visited configurations
+    private boolean debug;                   // Print every step
+    private boolean step;                    // Wait for input between steps
+    private PrintStream out;                 // Where debug output goes
+
+    private Domain<A> domain;                // Type of values and operations to use
+    private IntOperations op;                // Type of operations to use
+    private IntLattice zLattice;             // Type lattice for Z
+    private IntLattice ttLattice;            // Type lattice for TT
+    private Program program;                 // Code to execute
+    private Set<Configuration> visited;      // Visited configurations
     private LinkedList<Configuration> queue; // BFS queue
-    private SignExc[] zVals;                 // Lubs of Z
-    private TTExc[] ttVals;                  // Lubs of TT
-    private HashMap<String, SignExc>[] lubs; // Lubs of vars
-    private int maxControlPoint;             // Highest control point
-    private int tryDepth, exceptionDepth;    // For handling nested Try Catch
+    private int[] zVals;                     // Lubs of Z as bits, -1 for none
+    private int[] ttVals;                    // Lubs of TT as bits, -1 for none
+    private long[][] varVals;                // Lubs of vars packed as in SymbolTable
+    private Join[] heads;                    // Widened vars by loop head pc, else null
+    private long[][] pinned;                 // Narrowed vars by loop head pc while narrowing
+    private HashMap<Configuration, Join>[] merges; // Merged vars by join pc and rest
+    private int mergeLimit;                  // Configurations kept apart, 0 for no merging
+    private GuardRefiner refiner;            // Narrows variables by guards, null for none
+    private HashMap<Configuration, ArrayList<Configuration>>[] covers; // Maximal vars by pc and rest
+    private Blocks blocks;                   // Basic blocks if summaries are kept
+    private HashMap<Configuration, Summary>[] summaries; // By block start and used vars
+    private boolean atomic;                  // Evaluate expressions in one step
+    private A[] zLubs;                       // Lubs of Z
+    private TTExc[] ttLubs;                  // Lubs of TT
+    private HashMap<String, A>[] lubs;       // Lubs of vars
+    private int terminal;                    // Lub index of terminal states
+    private int threads;                     // Parallel workers, 0 for BFS
+    private int offHeapCapacity;             // Off-heap visited set size, 0 for heap
+    private Metrics metrics;                 // Counters of the exploration
+    private VM<?> previous;                  // Run of an older version to reuse
+    private boolean forgetDead;              // Forget variables never read again
+    private Liveness liveness;               // Dead variables by pc if forgetDead
     private boolean possiblyNormalTermination;
     private boolean possiblyExceptionalTermination;
 
-    public VM(Code code, boolean debug, boolean step) {
-        DEBUG                          = debug;
-        STEP                           = step;
-        op                             = new SignExcOps();
-        zLattice                       = new SignExcLattice();
-        ttLattice                      = new TTExcLattice();
+    public VM(Program program, Domain<A> domain, boolean debug, boolean step) {
+        this.debug                     = debug;
+        this.step                      = step;
+        out                            = System.out;
+        this.program                   = program;
+        this.domain                    = domain;
+        op                             = domain;
+        zLattice                       = domain.zLattice();
+        ttLattice                      = domain.ttLattice();
         visited                        = new HashSet<Configuration>();
         queue                          = new LinkedList<Configuration>();
-        maxControlPoint                = 0;
-        tryDepth                       = 0;
-        exceptionDepth                 = 0;
+        threads                        = 0;
+        offHeapCapacity                = 0;
+        metrics                        = new Metrics();
         possiblyNormalTermination      = false;
         possiblyExceptionalTermination = false;
 
-        Configuration conf = new Configuration();
-        conf.setCode(code);
+        // Lubs are indexed by control point - 1, and terminal states
+        // are kept after the last control point
+        terminal = 0;
+        for (int pc = 0; pc < program.size(); ++pc)
+            terminal = Math.max(terminal, program.inst(pc).stmControlPoint);
+        zVals   = new int[terminal + 1];
+        ttVals  = new int[terminal + 1];
+        Arrays.fill(zVals, -1);
+        Arrays.fill(ttVals, -1);
+
+        Configuration conf = new Configuration(program.numVariables(), domain.bits());
+        varVals = new long[terminal + 1][conf.getSymTable().words()];
+        if (domain.widens()) {
+            heads = new Join[program.size()];
+            for (int pc = 0; pc < program.size(); ++pc)
+                if (program.inst(pc) instanceof Loop)
+                    heads[pc] = new Join();
+        }
         queue.add(conf);
     }
 
+    /**
+     * Return a clone of `conf`, counting it.
+     */
+    private Configuration clone(Configuration conf) {
+        metrics.cloned();
+        return conf.clone();
+    }
+
+    /**
+     * Return a clone of `conf` at `pc`, counting it.
+     */
+    private Configuration successor(Configuration conf, int pc) {
+        Configuration c = clone(conf);
+        c.setPc(pc);
+        return c;
+    }
+
     /**
      * Execute one step of the code with the given Configuration `conf`.
      * Return the set of resulting configurations.
      */
     private HashSet<Configuration> step(Configuration conf) {
-        if (DEBUG) System.out.println(conf);
+        if (debug) out.println(conf.toString(program, domain));
 
-        Inst inst = conf.getCode().get(0);
-        if (DEBUG) {
-            System.out.println("> " + inst.opcode + " (ctrl: " +
-                    inst.stmControlPoint + ")");
-            System.out.println("Exceptional state: " + conf.isExceptional());
+        // `conf` is in `visited` and must not change, every successor
+        // is a clone of it
+        int pc = conf.getPc();
+        Inst inst = program.inst(pc);
+        int next = program.next(pc);
+        metrics.step(inst.opcode);
+        if (debug) {
+            out.println("> " + inst.opcode + " (pc: " + pc +
+                    ", ctrl: " + inst.stmControlPoint + ")");
+            out.println("Exceptional state: " + conf.isExceptional());
         }
 
         HashSet<Configuration> configs = new HashSet<Configuration>();
 
         Configuration confNew;
-        Code c1, c2, c1_2, c2_2;
-        SignExc a, a1, a2;
-        TTExc b, b1, b2;
-        conf.getCode().remove(0);
+        int a, a1, a2;
+        int b, b1, b2;
         switch (inst.opcode) {
             case ADD:
-                confNew = conf.clone();
-                a1 = (SignExc) confNew.popStack();
-                a2 = (SignExc) confNew.popStack();
+                confNew = successor(conf, next);
+                a1 = confNew.popStack();
+                a2 = confNew.popStack();
                 confNew.pushStack(op.add(a1, a2));
                 configs.add(confNew);
                 break;
             case AND:
-                confNew = conf.clone();
-                b1 = (TTExc) confNew.popStack();
-                b2 = (TTExc) confNew.popStack();
+                confNew = successor(conf, next);
+                b1 = confNew.popStack();
+                b2 = confNew.popStack();
                 confNew.pushStack(op.and(b1, b2));
                 configs.add(confNew);
                 break;
             case BRANCH:
-                b = (TTExc) conf.popStack();
+                b = conf.getStackTop();
                 if (op.possiblyBErr(b)) {
-                    if (!conf.isExceptional()) exceptionDepth = tryDepth;
-                    confNew = conf.clone();
+                    confNew = successor(conf, next);
+                    confNew.popStack();
+                    if (!conf.isExceptional())
+                        confNew.setExceptionDepth(program.depth(pc));
                     confNew.setExceptional(true);
+                    confNew.setPc(program.exit(pc));
                     configs.add(confNew);
                 }
                 if (op.possiblyTrue(b)) {
-                    confNew = conf.clone();
-                    confNew.getCode().addAll(0, ((Branch) inst).c1);
-                    configs.add(confNew);
+                    confNew = successor(conf, next);
+                    confNew.popStack();
+                    if (refiner == null || refiner.refine(confNew, pc, true))
+                        configs.add(confNew);
                 }
                 if (op.possiblyFalse(b)) {
-                    confNew = conf.clone();
-                    confNew.getCode().addAll(0, ((Branch) inst).c2);
-                    configs.add(confNew);
+                    confNew = successor(conf, next);
+                    confNew.popStack();
+                    confNew.setPc(program.alt(pc));
+                    if (refiner == null || refiner.refine(confNew, pc, false))
+                        configs.add(confNew);
                 }
                 break;
             case EQ:
-                confNew = conf.clone();
-                a1 = (SignExc) confNew.popStack();
-                a2 = (SignExc) confNew.popStack();
+                confNew = successor(conf, next);
+                a1 = confNew.popStack();
+                a2 = confNew.popStack();
                 confNew.pushStack(op.eq(a1, a2));
                 configs.add(confNew);
                 break;
             case FALSE:
-                confNew = conf.clone();
+                confNew = successor(conf, next);
                 confNew.pushStack(op.abs(false));
                 configs.add(confNew);
                 break;
             case FETCH:
-                confNew = conf.clone();
-                a = confNew.getVar(((Fetch) inst).x);
+                confNew = successor(conf, next);
+                a = confNew.getVar(((Fetch) inst).slot, domain.unknown());
                 confNew.pushStack(a);
                 configs.add(confNew);
                 break;
             case LE:
-                confNew = conf.clone();
-                a1 = (SignExc) confNew.popStack();
-                a2 = (SignExc) confNew.popStack();
+                confNew = successor(conf, next);
+                a1 = confNew.popStack();
+                a2 = confNew.popStack();
                 confNew.pushStack(op.leq(a1, a2));
                 configs.add(confNew);
                 break;
             case LOOP:
-                confNew = conf.clone();
-                c1 = ((Loop) inst).c1;
-                c2 = ((Loop) inst).c2;
-                c1_2 = new Code();
-                c2_2 = new Code();
-                c1_2.addAll(c2);
-
-                Loop loop = new Loop(c1, c2);
-                loop.stmControlPoint = inst.stmControlPoint;
-                c1_2.add(loop);
-
-                Noop noop = new Noop();
-                noop.stmControlPoint = inst.stmControlPoint;
-                c2_2.add(noop);
-                // Insert new code at current position in code
-                confNew.getCode().addAll(0, c1);
-                Branch branch = new Branch(c1_2, c2_2);
-                branch.stmControlPoint = inst.stmControlPoint;
-                confNew.getCode().add(c1.size(), branch);
+                // The guard and BRANCH follow in the program
+                confNew = successor(conf, next);
                 configs.add(confNew);
                 break;
             case MULT:
-                confNew = conf.clone();
-                a1 = (SignExc) confNew.popStack();
-                a2 = (SignExc) confNew.popStack();
+                confNew = successor(conf, next);
+                a1 = confNew.popStack();
+                a2 = confNew.popStack();
                 confNew.pushStack(op.multiply(a1, a2));
                 configs.add(confNew);
                 break;
             case NEG:
-                confNew = conf.clone();
-                b = (TTExc) confNew.popStack();
+                confNew = successor(conf, next);
+                b = confNew.popStack();
                 confNew.pushStack(op.neg(b));
                 configs.add(confNew);
                 break;
             case NOOP:
-                confNew = conf.clone();
+                confNew = successor(conf, next);
                 configs.add(confNew);
                 break;
             case PUSH:
-                confNew = conf.clone();
+                confNew = successor(conf, next);
                 confNew.pushStack(op.abs(((Push) inst).getValue()));
                 configs.add(confNew);
                 break;
             case STORE:
-                a = (SignExc) conf.popStack();
+                a = conf.getStackTop();
                 if (op.possiblyAErr(a)) {
-                    if (!conf.isExceptional()) exceptionDepth = tryDepth;
-                    confNew = conf.clone();
+                    confNew = successor(conf, next);
+                    confNew.popStack();
+                    if (!conf.isExceptional())
+                        confNew.setExceptionDepth(program.depth(pc));
                     confNew.setExceptional(true);
                     // to initialize x
-                    confNew.getVar(((Store) inst).x);
+                    confNew.getVar(((Store) inst).slot, domain.unknown());
                     configs.add(confNew);
                 }
                 if (op.possiblyInt(a)) {
-                    confNew = conf.clone();
+                    confNew = successor(conf, next);
+                    confNew.popStack();
                     if (!conf.isExceptional())
-                        confNew.setVar(((Store) inst).x, a);
+                        confNew.setVar(((Store) inst).slot, a);
                     else // to initialize x
-                        confNew.getVar(((Store) inst).x);
+                        confNew.getVar(((Store) inst).slot, domain.unknown());
                     configs.add(confNew);
                 }
-                if (a == SignExc.NONE_A) {
-                    confNew = conf.clone();
+                if (op.isNone(a)) {
+                    confNew = successor(conf, next);
+                    confNew.popStack();
                     configs.add(confNew);
                 }
                 break;
             case SUB:
-                confNew = conf.clone();
-                a1 = (SignExc) confNew.popStack();
-                a2 = (SignExc) confNew.popStack();
+                confNew = successor(conf, next);
+                a1 = confNew.popStack();
+                a2 = confNew.popStack();
                 confNew.pushStack(op.subtract(a1, a2));
                 configs.add(confNew);
                 break;
             case TRUE:
-                confNew = conf.clone();
+                confNew = successor(conf, next);
                 confNew.pushStack(op.abs(true));
                 configs.add(confNew);
                 break;
             case DIV:
-                confNew = conf.clone();
-                a1 = (SignExc) confNew.popStack();
-                a2 = (SignExc) confNew.popStack();
+                confNew = successor(conf, next);
+                a1 = confNew.popStack();
+                a2 = confNew.popStack();
                 a = op.divide(a1, a2);
                 confNew.pushStack(a);
                 configs.add(confNew);
                 break;
             case TRY:
-                confNew = conf.clone();
-                c1 = ((Try) inst).c1;
-                c2 = ((Try) inst).c2;
+                confNew = successor(conf, next);
                 // Catch
-                if (c1 == null) {
-                    if (confNew.isExceptional()) {
-                        if (DEBUG) System.out.println("CATCH EXCEPTION");
-                        // Handle nested Try Catch
-                        if (tryDepth == exceptionDepth)
-                            confNew.setExceptional(false);
-                    }
-                    confNew.getCode().addAll(0, c2);
-                    --tryDepth;
-                // Try
-                } else {
-                    ++tryDepth;
-                    confNew.getCode().addAll(0, c1);
-                    Try tr = new Try(null, c2);
-                    tr.stmControlPoint = c2.get(0).stmControlPoint;
-                    confNew.getCode().add(c1.size(), tr);
+                if (program.isHandler(pc) && confNew.isExceptional()) {
+                    if (debug) out.println("CATCH EXCEPTION");
+                    // Handle nested Try Catch, the Try depth of
+                    // a configuration is given by its pc
+                    if (confNew.getExceptionDepth() == program.depth(pc))
+                        confNew.setExceptional(false);
                 }
                 configs.add(confNew);
                 break;
             default:
-                System.err.println("Invalid opcode");
-                System.exit(1);
+                throw new IllegalStateException("Invalid opcode " + inst.opcode);
         }
 
+        metrics.generated(configs.size());
         return configs;
     }
 
+    /**
+     * Return whether `inst` is part of an expression, so that it only
+     * pushes a value computed from those it pops and the variables.
+     */
+    private static boolean isExpression(Inst inst) {
+        switch (inst.opcode) {
+            case ADD: case AND: case DIV: case EQ: case FALSE: case FETCH:
+            case LE: case MULT: case NEG: case PUSH: case SUB: case TRUE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Evaluate the instructions of expressions from the pc of `conf` on
+     * at once, on a scratch stack, and return the configuration at the
+     * first instruction after them, typically a STORE or BRANCH. Each
+     * such instruction has one successor, at the same control point,
+     * with the same variables but for those a FETCH initializes, so
+     * only the last one adds to the lubs.
+     */
+    private Configuration evaluate(Configuration conf) {
+        if (debug) out.println(conf.toString(program, domain));
+
+        Configuration c = clone(conf);
+        int pc = c.getPc(), cp = program.inst(pc).stmControlPoint;
+        int[] stack = new int[8];
+        int sp = 0;
+        while (pc < program.size() && isExpression(program.inst(pc))
+                && program.inst(pc).stmControlPoint == cp) {
+            Inst inst = program.inst(pc);
+            metrics.step(inst.opcode);
+            if (debug) out.println("> " + inst.opcode + " (pc: " + pc + ")");
+
+            // Operands below the scratch stack are on that of `c`
+            int a1 = 0, a2 = 0;
+            switch (inst.opcode) {
+                case ADD: case AND: case DIV: case EQ: case LE: case MULT: case SUB:
+                    a1 = sp > 0 ? stack[--sp] : c.popStack();
+                    a2 = sp > 0 ? stack[--sp] : c.popStack();
+                    break;
+                case NEG:
+                    a1 = sp > 0 ? stack[--sp] : c.popStack();
+                    break;
+                default:
+                    if (sp == stack.length)
+                        stack = Arrays.copyOf(stack, 2 * sp);
+                    break;
+            }
+
+            int a;
+            switch (inst.opcode) {
+                case ADD:   a = op.add(a1, a2); break;
+                case AND:   a = op.and(a1, a2); break;
+                case DIV:   a = op.divide(a1, a2); break;
+                case EQ:    a = op.eq(a1, a2); break;
+                case FALSE: a = op.abs(false); break;
+                case FETCH: a = c.getVar(((Fetch) inst).slot, domain.unknown()); break;
+                case LE:    a = op.leq(a1, a2); break;
+                case MULT:  a = op.multiply(a1, a2); break;
+                case NEG:   a = op.neg(a1); break;
+                case PUSH:  a = op.abs(((Push) inst).getValue()); break;
+                case SUB:   a = op.subtract(a1, a2); break;
+                case TRUE:  a = op.abs(true); break;
+                default:
+                    throw new IllegalStateException("Invalid opcode " + inst.opcode);
+            }
+            stack[sp++] = a;
+            pc = program.next(pc);
+        }
+
+        for (int i = 0; i < sp; ++i)
+            c.pushStack(stack[i]);
+        c.setPc(pc);
+        metrics.generated(1);
+        return c;
+    }
+
     /**
      * Perform one execute step of the VM by doing a BFS search
      * of the configuration space, return `false` if no more
@@ -253,135 +385,797 @@ public class VM {
      */
     private boolean executeStep() {
         Configuration conf = queue.removeFirst();
-        int controlPoint = conf.getCode().get(0).stmControlPoint;
-        HashSet<Configuration> configs = step(conf);
+        metrics.dequeue();
+        if (covers != null && evicted(conf)) {
+            metrics.subsumed();
+            return queue.size() != 0;
+        }
+        HashSet<Configuration> configs = successors(conf);
 
-        // Add all non-visited Configurations to the queue
+        // Add all non-visited Configurations to the queue,
+        // they are never modified so no copies are needed
         for (Configuration c : configs) {
-            if (!visited.contains(c) && !c.getCode().isEmpty()) {
-                queue.add(c.clone());
+            if (visit(c) && c.getPc() != program.size()) {
+                queue.add(c);
+                metrics.enqueue();
             }
         }
 
-        // If the new control point is higher, consider the config visited
-        for (Configuration c : configs) {
-            // Last control point
-            if (c.getCode().isEmpty()) {
-                visited.add(c.clone());
+        return queue.size() != 0;
+    }
+
+    /**
+     * Consider `c` visited, keep track of the highest control point
+     * and join `c` into the lubs. Return `false` if `c` was already
+     * visited.
+     */
+    private boolean visit(Configuration c) {
+        forget(c);
+        int pc = c.getPc();
+        if (heads != null && pc != program.size() && heads[pc] != null) {
+            if (pinned != null && pinned[pc] != null)
+                pin(heads[pc], pinned[pc], c);
+            else
+                join(heads[pc], c, 1, true);
+        }
+        else if (merges != null && pc != program.size() && merges[pc] != null
+                && !visited.contains(c))
+            merge(c);
+
+        if (covers != null && !visited.contains(c) && !cover(c)) {
+            metrics.subsumed();
+            return false;
+        }
+        boolean fresh = visited.add(c);
+        metrics.visited(fresh);
+        if (!fresh)
+            return false;
+
+        record(c);
+        return true;
+    }
+
+    /**
+     * Set the variables that `c` never reads again to the unknown
+     * value if they are forgotten.
+     */
+    private void forget(Configuration c) {
+        if (liveness != null) {
+            int[] dead = liveness.dead(c.getPc(), c.isExceptional());
+            c.setSymTable(c.getSymTable().overwrite(dead, domain.unknown()));
+        }
+    }
+
+    /**
+     * Join `c` into the lubs.
+     */
+    private void record(Configuration c) {
+        Inst inst = c.getPc() != program.size() ? program.inst(c.getPc()) : null;
+        int cp = inst == null ? terminal : inst.stmControlPoint - 1;
+
+        // Each control point is joined into by one thread at a time
+        synchronized (varVals[cp]) {
+            // Check if the program exited normally
+            if (inst == null) {
+                if (!c.isExceptional())
+                    possiblyNormalTermination = true;
+                else
+                    possiblyExceptionalTermination = true;
+            }
+
+            if (inst instanceof Store) {
+                zVals[cp] = zVals[cp] >= 0 ? zLattice.lub(zVals[cp],
+                        c.getStackTop()) : c.getStackTop();
+            }
+            if (inst instanceof Branch) {
+                ttVals[cp] = ttVals[cp] >= 0 ? ttLattice.lub(ttVals[cp],
+                        c.getStackTop()) : c.getStackTop();
+            }
+
+            // If the lub of variables is the union of their bits,
+            // whole words of slots can be joined at once
+            SymbolTable symTable = c.getSymTable();
+            long[] vals = varVals[cp];
+            if (domain.joinsByUnion()) {
+                for (int i = 0; i < vals.length; ++i)
+                    vals[i] |= symTable.word(i);
             } else {
-                // Keep track of the highest control point
-                if (c.getCode().get(0).stmControlPoint > maxControlPoint)
-                    maxControlPoint = c.getCode().get(0).stmControlPoint;
-                visited.add(c.clone());
+                int bits = symTable.bits();
+                for (int j = 0; j < symTable.slots(); ++j) {
+                    int a = symTable.getBits(j), old = SymbolTable.get(vals, bits, j);
+                    if (a != 0)
+                        SymbolTable.put(vals, bits, j, old != 0 ? zLattice.lub(old, a) : a);
+                }
             }
         }
+    }
 
-        return queue.size() != 0;
+    /**
+     * The configurations a block goes through and ends in from one
+     * configuration at its start, with only the variables it uses.
+     */
+    private static class Summary {
+        final ArrayList<Configuration> inner = new ArrayList<Configuration>();
+        final HashSet<Configuration> exits = new HashSet<Configuration>();
     }
 
     /**
-     * Execute the entire program.
+     * Return the configurations `conf` steps to, or if it is at the
+     * start of a block, those it ends the block in, joining those in
+     * between into the lubs.
      */
-    public void execute() throws IOException {
-        // The first Configuration is always visited
-        visited.add(queue.getFirst().clone());
+    private HashSet<Configuration> successors(Configuration conf) {
+        int pc = conf.getPc();
+        if (summaries == null || !blocks.isStart(pc)) {
+            if (!atomic || !isExpression(program.inst(pc)))
+                return step(conf);
+            HashSet<Configuration> configs = new HashSet<Configuration>();
+            configs.add(evaluate(conf));
+            return configs;
+        }
 
-        // Execute resulting AM Code using a step-function
-        if (STEP) {
-            while (executeStep())
-                new BufferedReader(new InputStreamReader(System.in)).readLine();
+        // The block only depends on the variables it uses
+        int[] used = blocks.used(pc);
+        SymbolTable vars = conf.getSymTable();
+        Configuration key = conf.clone();
+        key.setSymTable(new SymbolTable(vars.slots(), vars.bits()).copy(used, vars));
+        Summary s;
+        synchronized (summaries[pc]) {
+            s = summaries[pc].get(key);
+        }
+        if (s == null) {
+            Summary t = summarize(key);
+            synchronized (summaries[pc]) {
+                s = summaries[pc].putIfAbsent(key, t);
+            }
+            if (s == null)
+                s = t;
         } else {
-            while (executeStep()) {};
+            metrics.summaryHit();
         }
 
-        ++maxControlPoint; // Since last control point will have no instructions left
+        for (Configuration m : s.inner) {
+            m = expand(m, vars, used);
+            forget(m);
+            record(m);
+        }
+        HashSet<Configuration> configs = new HashSet<Configuration>();
+        for (Configuration e : s.exits)
+            configs.add(expand(e, vars, used));
+        return configs;
+    }
 
-        if (DEBUG) System.out.println("Max control point: " + maxControlPoint);
-        if (DEBUG) System.out.println(">>> END");
+    /**
+     * Step from `key`, at the start of a block, to the end of the
+     * block.
+     */
+    private Summary summarize(Configuration key) {
+        int start = key.getPc(), end = blocks.end(start);
+        Summary s = new Summary();
+        HashSet<Configuration> inner = new HashSet<Configuration>();
+        LinkedList<Configuration> work = new LinkedList<Configuration>();
+        work.add(key);
+        while (!work.isEmpty()) {
+            for (Configuration c : step(work.removeFirst())) {
+                if (c.getPc() <= start || c.getPc() >= end)
+                    s.exits.add(c);
+                else if (inner.add(c)) {
+                    s.inner.add(c);
+                    work.add(c);
+                }
+            }
+        }
+        return s;
     }
 
     /**
-     * Compute the least upper bounds.
+     * Return `c`, a configuration of a summary, with the variables not
+     * in `used` from `vars`.
      */
-    @SuppressWarnings("unchecked")
-    public void computeLubs() {
-        lubs = new HashMap[maxControlPoint];
-        zVals  = new SignExc[maxControlPoint];
-        ttVals = new TTExc[maxControlPoint];
+    private Configuration expand(Configuration c, SymbolTable vars, int[] used) {
+        Configuration e = clone(c);
+        e.setSymTable(vars.copy(used, c.getSymTable()));
+        return e;
+    }
 
-        for (int i = 0; i < lubs.length; ++i)
-            lubs[i] = new HashMap<String, SignExc>();
+    /**
+     * The variables of the configurations joined at one pc.
+     */
+    private static class Join {
+        long[] vals;                         // Packed as in SymbolTable
+        int count;                           // Configurations joined
+    }
 
-        // Pick out the relevant configurations for the lubs
-        for (Configuration c : visited) {
-            Inst inst = c.getCode().size() > 0 ? c.getCode().get(0) : null;
-            int cp = inst == null ? maxControlPoint - 1 :
-                inst.stmControlPoint - 1;
+    /**
+     * Join the variables of `c` into `j`, and once more than `keep`
+     * configurations have been joined, replace the variables of `c`
+     * with the join. With `widen`, the join is widened once it has
+     * been joined into WIDEN_DELAY times, so that the variables at a
+     * loop head only change finitely often and the exploration
+     * terminates even if the domain has infinite ascending chains.
+     */
+    private void join(Join j, Configuration c, int keep, boolean widen) {
+        synchronized (j) {
+            SymbolTable symTable = c.getSymTable();
+            if (j.count++ == 0) {
+                j.vals = new long[symTable.words()];
+                for (int i = 0; i < j.vals.length; ++i)
+                    j.vals[i] = symTable.word(i);
+                return;
+            }
 
-            // Check if the program exited normally
-            if (cp == maxControlPoint - 1) {
-                if (!possiblyNormalTermination)
-                    possiblyNormalTermination = !c.isExceptional();
-                if (!possiblyExceptionalTermination)
-                    possiblyExceptionalTermination = c.isExceptional();
+            // A variable unset in one configuration takes the value of
+            // the other, as in the lubs
+            int bits = symTable.bits();
+            boolean widening = widen && j.count > WIDEN_DELAY;
+            for (int i = 0; i < symTable.slots(); ++i) {
+                int a1 = SymbolTable.get(j.vals, bits, i), a2 = symTable.getBits(i);
+                int a = a1 == 0 ? a2 : a2 == 0 ? a1
+                      : widening ? domain.widen(a1, a2) : zLattice.lub(a1, a2);
+                SymbolTable.put(j.vals, bits, i, a);
             }
+            if (j.count > keep)
+                c.setSymTable(new SymbolTable(j.vals.clone(), symTable.slots(), bits));
+        }
+    }
 
-            if (inst instanceof Store) {
-                zVals[cp] = zVals[cp] != null ? zLattice.lub(zVals[cp],
-                        (SignExc) c.getStackTop()) : (SignExc) c.getStackTop();
+    /**
+     * Join the variables of `c` into `j` and replace them with `p`, or
+     * where they are not below it, with its widening by them.
+     */
+    private void pin(Join j, long[] p, Configuration c) {
+        join(j, c, Integer.MAX_VALUE, false);
+        SymbolTable symTable = c.getSymTable();
+        int bits = symTable.bits();
+        long[] vals = p.clone();
+        for (int i = 0; i < symTable.slots(); ++i) {
+            int a1 = SymbolTable.get(p, bits, i), a2 = symTable.getBits(i);
+            if (a2 != 0 && a2 != a1)
+                SymbolTable.put(vals, bits, i,
+                    a1 == 0 ? domain.unknown() : domain.widen(a1, a2));
+        }
+        c.setSymTable(new SymbolTable(vals, symTable.slots(), bits));
+    }
+
+    /**
+     * Return `p` narrowed by the join `n` of the variables that reached
+     * a loop head while it was pinned to `p`.
+     */
+    private long[] narrow(long[] p, long[] n, int slots, int bits) {
+        long[] vals = p.clone();
+        for (int i = 0; i < slots; ++i) {
+            int a1 = SymbolTable.get(p, bits, i), a2 = SymbolTable.get(n, bits, i);
+            if (a2 != 0)
+                SymbolTable.put(vals, bits, i, a1 == 0 ? a2
+                    : domain.narrow(zLattice.lub(a1, a2), a2));
+        }
+        return vals;
+    }
+
+    /**
+     * Return a copy of `c` without its variables.
+     */
+    private static Configuration rest(Configuration c) {
+        Configuration rest = c.clone();
+        rest.setSymTable(new SymbolTable(0, 4));
+        return rest;
+    }
+
+    /**
+     * Join `c`, which is at a join point and not visited, with the
+     * configurations there that only differ in their variables.
+     */
+    private void merge(Configuration c) {
+        Configuration rest = rest(c);
+        Join j;
+        synchronized (merges[c.getPc()]) {
+            j = merges[c.getPc()].computeIfAbsent(rest, r -> new Join());
+        }
+        join(j, c, mergeLimit, false);
+    }
+
+    /**
+     * Return whether every variable of `c1` is below that of `c2`. An
+     * unset variable is unknown but not in the lubs, so it is only
+     * below an unset one.
+     */
+    private boolean below(Configuration c1, Configuration c2) {
+        SymbolTable s1 = c1.getSymTable(), s2 = c2.getSymTable();
+        if (domain.joinsByUnion()) {
+            // Below is a subset of the bits, and the same slots are set
+            for (int i = 0; i < s1.words(); ++i) {
+                long w1 = s1.word(i), w2 = s2.word(i);
+                if ((w1 & ~w2) != 0 || set(w1, s1.bits()) != set(w2, s1.bits()))
+                    return false;
             }
-            if (inst instanceof Branch) {
-                ttVals[cp] = ttVals[cp] != null ? ttLattice.lub(ttVals[cp],
-                        (TTExc) c.getStackTop()) : (TTExc) c.getStackTop();
+            return true;
+        }
+        for (int i = 0; i < s1.slots(); ++i) {
+            int a1 = s1.getBits(i), a2 = s2.getBits(i);
+            if (a1 == a2)
+                continue;
+            if (a1 == 0 || a2 == 0 || zLattice.lub(a1, a2) != a2)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Return the word `w` of slots of `bits` bits with the lowest bit
+     * of each slot set if it is, and all other bits clear.
+     */
+    private static long set(long w, int bits) {
+        for (int i = 1; i < bits; ++i)
+            w |= w >>> i;
+        return w & -1L / ((1L << bits) - 1);
+    }
+
+    /**
+     * Return the maximal configurations visited at the pc of `c` that
+     * only differ from it in their variables.
+     */
+    private ArrayList<Configuration> covers(Configuration c) {
+        HashMap<Configuration, ArrayList<Configuration>> byRest = covers[c.getPc()];
+        synchronized (byRest) {
+            return byRest.computeIfAbsent(rest(c), r -> new ArrayList<Configuration>());
+        }
+    }
+
+    /**
+     * Add `c` to the maximal configurations at its pc, evicting those
+     * below it. Return `false` if one of them is above `c` instead.
+     */
+    private boolean cover(Configuration c) {
+        ArrayList<Configuration> max = covers(c);
+        synchronized (max) {
+            int n = 0;
+            for (int i = 0; i < max.size(); ++i) {
+                Configuration m = max.get(i);
+                // Nothing is evicted before, the maximal configurations
+                // are incomparable
+                if (below(c, m))
+                    return false;
+                if (!below(m, c))
+                    max.set(n++, m);
+            }
+            max.subList(n, max.size()).clear();
+            max.add(c);
+        }
+        return true;
+    }
+
+    /**
+     * Return whether `c`, which was visited, has since been evicted by
+     * a configuration above it, so that stepping it adds nothing.
+     */
+    private boolean evicted(Configuration c) {
+        ArrayList<Configuration> max = covers(c);
+        synchronized (max) {
+            return !max.contains(c);
+        }
+    }
+
+    /**
+     * Explores the configurations reachable from one configuration,
+     * forking a task per non-visited successor, or from all queued
+     * configurations if it has none. Completes when all of its
+     * subtasks have.
+     */
+    private class Explore extends CountedCompleter<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration conf;
+
+        Explore(CountedCompleter<?> parent, Configuration conf) {
+            super(parent);
+            this.conf = conf;
+        }
+
+        public void compute() {
+            if (conf == null) {
+                for (Configuration c : queue) {
+                    addToPendingCount(1);
+                    new Explore(this, c).fork();
+                }
+                tryComplete();
+                return;
             }
 
-            for (Map.Entry<String, SignExc> e : c.getSymTable().entrySet()) {
-                if (lubs[cp].containsKey(e.getKey())) {
-                    lubs[cp].put(e.getKey(),
-                                   zLattice.lub(lubs[cp].get(e.getKey()),
-                                                      e.getValue()));
-                } else {
-                    lubs[cp].put(e.getKey(), e.getValue());
+            metrics.dequeue();
+            if (covers != null && evicted(conf)) {
+                metrics.subsumed();
+                tryComplete();
+                return;
+            }
+            for (Configuration c : successors(conf)) {
+                if (visit(c) && c.getPc() != program.size()) {
+                    addToPendingCount(1);
+                    metrics.enqueue();
+                    new Explore(this, c).fork();
                 }
             }
+            tryComplete();
         }
-        // Make sure all variables exist at all control points
-        for (int j = lubs.length-1; j >= 0; j--) {
-            for (Map.Entry<String, SignExc> e : lubs[j].entrySet()) {
-                for (int i = 0; i < lubs.length-1; i++) {
-                    if (!lubs[i].containsKey(e.getKey()))
-                        lubs[i].put(e.getKey(), SignExc.Z);
-                }
+    }
+
+    /**
+     * Explore the configuration space on a ForkJoinPool with the given
+     * number of worker threads instead of by BFS, 0 for BFS. Both give
+     * the same visited configurations.
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Keep the visited configurations in an OffHeapSet sized for the
+     * given number of configurations instead of on the heap, 0 for
+     * the heap.
+     */
+    public void setOffHeapCapacity(int capacity) {
+        offHeapCapacity = capacity;
+    }
+
+    /**
+     * Write the debug output to `out` instead of standard output.
+     */
+    public void setOutput(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Set the variables that a configuration never reads again to the
+     * unknown value before looking it up in the visited set, so that
+     * configurations that only differ in those are explored once. The
+     * values of the other variables, Z and TT are the same as without,
+     * but a variable is unknown where it is dead.
+     */
+    public void setForgetDead(boolean forgetDead) {
+        this.forgetDead = forgetDead;
+    }
+
+    /**
+     * Narrow the variables in the guard of a BRANCH to the values that
+     * make it take an edge, and drop edges no values take.
+     */
+    public void setRefineGuards(boolean refine) {
+        refiner = refine ? new GuardRefiner(program, domain) : null;
+    }
+
+    /**
+     * Only visit a configuration if no configuration visited at its pc
+     * that only differs in its variables has them all above its own,
+     * and do not step those that such a configuration visited later is
+     * above. As every step is monotone, the configurations skipped
+     * reach nothing that those kept do not cover, and the lubs are the
+     * same, but only the maximal configurations at each pc are
+     * explored.
+     */
+    public void setSubsumption(boolean subsume) {
+        covers = null;
+        if (!subsume)
+            return;
+
+        covers = Maps.newArray(program.size() + 1);
+        for (int pc = 0; pc <= program.size(); ++pc)
+            covers[pc] = new HashMap<Configuration, ArrayList<Configuration>>();
+    }
+
+    /**
+     * Step over each basic block in one transition, with a summary of
+     * the configurations it goes through and ends in from each value
+     * of the variables it uses, computed the first time they reach it.
+     * The configurations inside a block are joined into the lubs but
+     * not visited, so fewer are, and the results are the same.
+     */
+    public void setBlockSummaries(boolean summarize) {
+        blocks = null;
+        summaries = null;
+        if (!summarize)
+            return;
+
+        blocks = new Blocks(program);
+        summaries = Maps.newArray(program.size());
+        for (int pc = 0; pc < program.size(); ++pc)
+            if (blocks.isStart(pc))
+                summaries[pc] = new HashMap<Configuration, Summary>();
+    }
+
+    /**
+     * Evaluate the instructions of an expression in one step instead
+     * of one step each, so that only configurations at statement
+     * boundaries, e.g. at a STORE or BRANCH, are visited. The results
+     * are the same.
+     */
+    public void setAtomicExpressions(boolean atomic) {
+        this.atomic = atomic;
+    }
+
+    /**
+     * Merge configurations that reach a join point, where control flow
+     * from several instructions meets, and only differ in their
+     * variables: once more than `limit` such configurations have been
+     * visited there, every later one continues with the lub of the
+     * variables of all of them. Fewer configurations are explored, at
+     * the cost of precision, and the results may depend on the order
+     * of exploration. 0 for no merging.
+     */
+    public void setMergeLimit(int limit) {
+        mergeLimit = limit;
+        merges = null;
+        if (limit == 0)
+            return;
+
+        int[] preds = new int[program.size() + 1];
+        for (int pc = 0; pc < program.size(); ++pc) {
+            ++preds[program.next(pc)];
+            if (program.inst(pc) instanceof Branch) {
+                ++preds[program.alt(pc)];
+                ++preds[program.exit(pc)];
             }
         }
+        merges = Maps.newArray(program.size());
+        for (int pc = 0; pc < program.size(); ++pc)
+            if (preds[pc] > 1)
+                merges[pc] = new HashMap<Configuration, Join>();
+    }
+
+    /**
+     * Reuse the configurations of the previous run that an edit of the
+     * program cannot change: those below `b`, which are the same in
+     * both programs, and those at `b`, which are explored again.
+     */
+    private void reuse(int b) {
+        queue.clear();
+        int n = 0;
+        for (Configuration c : previous.visited) {
+            if (c.getPc() > b)
+                continue;
+            c = c.resize(program.numVariables());
+            if (visit(c) && c.getPc() == b && b != program.size()) {
+                queue.add(c);
+                metrics.enqueue();
+            }
+            ++n;
+        }
+        if (debug) out.println("Reused " + n + " configurations up to pc " + b);
+    }
+
+    /**
+     * Explore from the configurations of the given run of an older
+     * version of the program, only exploring again what an edit may
+     * have changed. The results are those of exploring from scratch.
+     */
+    public void setPrevious(VM<?> previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Execute the entire program.
+     */
+    public void execute() throws IOException {
+        visited = newVisited();
+
+        if (forgetDead)
+            liveness = new Liveness(program);
+
+        // Values of another domain, or of another instance of the same
+        // domain, cannot be reused, nor can values forgotten where an
+        // edit later on may read them, or merged with values the edit
+        // may change, nor values refined by other guards or explored
+        // with other subsumption, nor those of a run that did not visit
+        // the configurations inside blocks or expressions, nor values
+        // pinned to the narrowed loop heads of the older program
+        int reused = previous != null && previous.domain == domain
+                     && heads == null
+                     && !forgetDead && !previous.forgetDead
+                     && mergeLimit == 0 && previous.mergeLimit == 0
+                     && (refiner == null) == (previous.refiner == null)
+                     && (covers == null) == (previous.covers == null)
+                     && summaries == null && previous.summaries == null
+                     && !previous.atomic
+                   ? program.reusablePrefix(previous.program) : -1;
+        if (reused >= 0) {
+            reuse(reused);
+        } else {
+            // The first Configuration is always visited
+            visit(queue.getFirst());
+            metrics.enqueue();
+        }
+        previous = null;
+
+        explore();
+        if (heads != null)
+            narrow();
+
+        if (debug) out.println("Max control point: " + lastControlPoint());
+        if (debug) out.println(">>> END");
+    }
+
+    /**
+     * Return an empty set of visited configurations.
+     */
+    private Set<Configuration> newVisited() {
+        if (offHeapCapacity > 0)
+            return new OffHeapSet(program.numVariables(), domain.bits(),
+                                  offHeapCapacity);
+        else if (threads > 0)
+            return ConcurrentHashMap.newKeySet();
+        else
+            return new HashSet<Configuration>();
+    }
+
+    /**
+     * Explore from the configurations in the queue until no new ones
+     * are reached.
+     */
+    private void explore() throws IOException {
+        // Execute resulting AM Code using a step-function
+        if (threads > 0) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                pool.invoke(new Explore(null, null));
+                queue.clear();
+            } finally {
+                pool.shutdown();
+            }
+        } else if (step) {
+            while (!queue.isEmpty() && executeStep())
+                new BufferedReader(new InputStreamReader(System.in)).readLine();
+        } else {
+            while (!queue.isEmpty() && executeStep()) {};
+        }
+    }
+
+    /**
+     * Explore again from scratch with the variables at each loop head
+     * pinned to those widened there, narrowed after each pass by the
+     * join of those that reached it, until that changes nothing or
+     * NARROWINGS passes are done. The pinned variables stay above those
+     * that reach the loop head, so every pass is sound, and the lubs
+     * are those of the last one.
+     */
+    private void narrow() throws IOException {
+        pinned = new long[program.size()][];
+        for (int pc = 0; pc < program.size(); ++pc)
+            if (heads[pc] != null && heads[pc].count > 0)
+                pinned[pc] = heads[pc].vals;
+
+        int slots = program.numVariables(), bits = domain.bits();
+        for (int k = 0; k < NARROWINGS; ++k) {
+            if (debug) out.println(">>> NARROWING " + (k + 1));
+            restart();
+            explore();
+
+            boolean narrowed = false;
+            for (int pc = 0; pc < program.size(); ++pc) {
+                if (pinned[pc] == null || heads[pc].count == 0)
+                    continue;
+                long[] vals = narrow(pinned[pc], heads[pc].vals, slots, bits);
+                narrowed |= !Arrays.equals(vals, pinned[pc]);
+                pinned[pc] = vals;
+            }
+            if (!narrowed)
+                break;
+        }
+    }
+
+    /**
+     * Forget every configuration explored and every lub, but not the
+     * pinned loop heads, and queue the first configuration again.
+     */
+    private void restart() {
+        visited = newVisited();
+        queue.clear();
+        queue.add(new Configuration(program.numVariables(), domain.bits()));
+        Arrays.fill(zVals, -1);
+        Arrays.fill(ttVals, -1);
+        for (long[] vals : varVals)
+            Arrays.fill(vals, 0);
+        possiblyNormalTermination      = false;
+        possiblyExceptionalTermination = false;
+        for (int pc = 0; pc < program.size(); ++pc)
+            if (heads[pc] != null)
+                heads[pc] = new Join();
+        clear(merges);
+        clear(covers);
+        clear(summaries);
+
+        visit(queue.getFirst());
+        metrics.enqueue();
+    }
+
+    private static void clear(HashMap<?, ?>[] maps) {
+        if (maps != null)
+            for (HashMap<?, ?> map : maps)
+                if (map != null)
+                    map.clear();
+    }
+
+    /**
+     * Compute the least upper bounds from those joined while exploring,
+     * one per control point of the program whether it was reached or
+     * not, with the terminal states after the last.
+     */
+    public void computeLubs() {
+        lubs = Maps.newArray(terminal + 1);
+
+        for (int i = 0; i < lubs.length; ++i) {
+            lubs[i] = new HashMap<String, A>();
+            SymbolTable vals = new SymbolTable(varVals[i],
+                program.numVariables(), domain.bits());
+            for (int j = 0; j < vals.slots(); ++j)
+                if (vals.getBits(j) != 0)
+                    lubs[i].put(program.variable(j), domain.value(vals.getBits(j)));
+        }
+        zLubs  = domain.newArray(terminal + 1);
+        ttLubs = new TTExc[terminal + 1];
+        for (int i = 0; i <= terminal; ++i) {
+            if (zVals[i] >= 0)
+                zLubs[i] = domain.value(zVals[i]);
+            if (ttVals[i] >= 0)
+                ttLubs[i] = SignExcBits.ttExc(ttVals[i]);
+        }
+
+        // Make sure all variables exist at all control points
+        A unknown = domain.value(domain.unknown());
+        HashSet<String> names = new HashSet<String>();
+        for (HashMap<String, A> vars : lubs)
+            names.addAll(vars.keySet());
+        for (int i = 0; i < lubs.length-1; i++)
+            for (String x : names)
+                lubs[i].putIfAbsent(x, unknown);
+    }
+
+    /**
+     * Count the exploration in the given metrics, e.g. to report
+     * them along with other phases of a run.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Return the counters of the exploration.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Return the number of distinct configurations explored.
+     */
+    public int getVisitedCount() {
+        return visited.size();
     }
 
     /**
      * Return the number of last control point
      */
     public int lastControlPoint() {
-        return maxControlPoint;
+        return terminal + 1;
     }
 
     /**
      * Return the least upper bounds of variables.
      */
-    public HashMap<String, SignExc>[] getVarLubs() {
+    public HashMap<String, A>[] getVarLubs() {
         return lubs;
     }
 
     /**
      * Return the least upper bouds of the Z values.
      */
-    public SignExc[] getZLubs() {
-        return zVals;
+    public A[] getZLubs() {
+        return zLubs;
     }
 
     /**
      * Return the least upper bouds of the TT values.
      */
     public TTExc[] getTTLubs() {
-        return ttVals;
+        return ttLubs;
     }
 
     /**
@@ -397,4 +1191,11 @@ public class VM {
     public boolean possiblyExceptionalTermination() {
         return possiblyExceptionalTermination;
     }
+
+    /**
+     * Return the SignExc that the value `a` abstracts to.
+     */
+    public SignExc sign(A a) {
+        return domain.sign(a);
+    }
 }
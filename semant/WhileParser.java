@@ -6,7 +6,10 @@ package semant;
 //----------------------------------------------------
 
 import java.io.FileReader;
+import java.io.PrintStream;
+import java.io.Reader;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java_cup.runtime.Symbol;
 import semant.whilesyntax.*;
 
@@ -185,9 +188,26 @@ public java_cup.runtime.Symbol do_action(
     @SuppressWarnings("all")
     
     public static Stm parse(String f) throws Exception {
-        return (Stm) (new WhileParser(new WhileTokenizer(new FileReader(f))).parse().value);
+        try (FileReader r = new FileReader(f)) {
+            return parse(r, System.err);
+        }
+    }
+
+    // Parse the program read from r, reporting errors to err
+    public static Stm parse(Reader r, PrintStream err) throws Exception {
+        WhileParser parser = new WhileParser(new WhileTokenizer(r));
+        parser.err = err;
+        return (Stm) parser.parse().value;
     }
+
+    private PrintStream err = System.err;
+    private String lastError = null;
     
+    // Used by newer CUP runtimes to name expected tokens
+    public Class<?> getSymbolContainer() {
+        return sym.class;
+    }
+
     public static String getConstantName(int value) {
         for (Field f : sym.class.getFields())
             try {
@@ -206,11 +226,20 @@ public java_cup.runtime.Symbol do_action(
         //    errMsg += " on line " + (s.left+1) + (s.right >= 0 ? " and col " + (s.right+1) : "");
         if (s != null)
             errMsg += " (sym: "+getConstantName(s.sym)+" value: " + s.value + ")";
-        System.err.println(errMsg);
+        err.println(errMsg);
+        lastError = errMsg;
+    }
+    // Name the expected tokens to err as well, not to standard output
+    protected void report_expected_token_ids() {
+        ArrayList<String> names = new ArrayList<String>();
+        for (Integer id : expected_token_ids())
+            names.add(getConstantName(id));
+        err.println("instead expected token classes are " + names);
     }
-    public void report_fatal_error(String msg, Object info) {
+    public void report_fatal_error(String msg, Object info) throws Exception {
+        String syntaxError = lastError;
         report_error(msg, info);
-        System.exit(-1);
+        throw new ParseException(syntaxError != null ? syntaxError : lastError);
     }
 
 }
@@ -517,7 +546,7 @@ public final java_cup.runtime.Symbol CUP$WhileParser$do_action(
 		int s2left = ((java_cup.runtime.Symbol)CUP$WhileParser$stack.elementAt(CUP$WhileParser$top-0)).left;
 		int s2right = ((java_cup.runtime.Symbol)CUP$WhileParser$stack.elementAt(CUP$WhileParser$top-0)).right;
 		Stm s2 = (Stm)((java_cup.runtime.Symbol) CUP$WhileParser$stack.elementAt(CUP$WhileParser$top-0)).value;
-		 RESULT = new Compound(s1, s2); 
+		 RESULT = Compound.append(s1, s2); 
               CUP$WhileParser$result = new java_cup.runtime.Symbol(1/*Stm*/, ((java_cup.runtime.Symbol)CUP$WhileParser$stack.elementAt(CUP$WhileParser$top-2)).left, ((java_cup.runtime.Symbol)CUP$WhileParser$stack.elementAt(CUP$WhileParser$top-0)).right, RESULT);
             }
           return CUP$WhileParser$result;
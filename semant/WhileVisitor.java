@@ -1,25 +1,24 @@
 package semant;
 
-import semant.amsyntax.*;
 import semant.whilesyntax.*;
 
 public interface WhileVisitor {
-    public Code visit(Compound compound);
-    public Code visit(Not not);
-    public Code visit(Conjunction and);
-    public Code visit(Assignment assignment);
-    public Code visit(Conditional conditional);
-    public Code visit(Equals equals);
-    public Code visit(FalseConst f);
-    public Code visit(LessThanEq lessthaneq);
-    public Code visit(Minus minus);
-    public Code visit(Num num);
-    public Code visit(Plus plus);
-    public Code visit(Skip skip);
-    public Code visit(Times times);
-    public Code visit(TrueConst t);
-    public Code visit(Var var);
-    public Code visit(While whyle);
-    public Code visit(TryCatch trycatch);
-    public Code visit(Divide div);
+    public void visit(Compound compound);
+    public void visit(Not not);
+    public void visit(Conjunction and);
+    public void visit(Assignment assignment);
+    public void visit(Conditional conditional);
+    public void visit(Equals equals);
+    public void visit(FalseConst f);
+    public void visit(LessThanEq lessthaneq);
+    public void visit(Minus minus);
+    public void visit(Num num);
+    public void visit(Plus plus);
+    public void visit(Skip skip);
+    public void visit(Times times);
+    public void visit(TrueConst t);
+    public void visit(Var var);
+    public void visit(While whyle);
+    public void visit(TryCatch trycatch);
+    public void visit(Divide div);
 }
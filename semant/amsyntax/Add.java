@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Add extends Inst {
-    public Add() {
-        super(Opcode.ADD);
+    public Add(int stmControlPoint) {
+        super(Opcode.ADD, stmControlPoint);
     }
 }
@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class And extends Inst {
-    public And() {
-        super(Opcode.AND);
+    public And(int stmControlPoint) {
+        super(Opcode.AND, stmControlPoint);
     }
 }
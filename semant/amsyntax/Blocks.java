@@ -0,0 +1,94 @@
+package semant.amsyntax;
+
+import java.util.BitSet;
+
+/**
+ * The basic blocks of a Program: runs of instructions that neither
+ * branch nor mark a Loop or Try, that are only entered at their first
+ * instruction and that execute one after another. A configuration at
+ * the start of a block has the same successors at the end of the block
+ * whatever the values of the variables the block does not use.
+ */
+public final class Blocks {
+
+    private final int[] ends;           // End of the block by start pc, else 0
+    private final int[][] used;         // Slots read or written by start pc
+
+    /**
+     * Compute the basic blocks of `program` of at least two
+     * instructions.
+     */
+    public Blocks(Program program) {
+        int n = program.size();
+
+        // Jumps may only enter a block at its start
+        BitSet targets = new BitSet(n + 1);
+        for (int pc = 0; pc < n; ++pc) {
+            if (program.next(pc) != pc + 1)
+                targets.set(program.next(pc));
+            if (program.inst(pc).opcode == Inst.Opcode.BRANCH) {
+                targets.set(program.alt(pc));
+                targets.set(program.exit(pc));
+            }
+        }
+
+        ends = new int[n];
+        used = new int[n][];
+        for (int pc = 0; pc < n; ) {
+            int end = pc;
+            BitSet slots = new BitSet(program.numVariables());
+            while (end < n && straight(program.inst(end))
+                    && (end == pc || !targets.get(end))) {
+                Inst inst = program.inst(end);
+                if (inst instanceof Fetch)
+                    slots.set(((Fetch) inst).slot);
+                if (inst instanceof Store)
+                    slots.set(((Store) inst).slot);
+                ++end;
+                if (program.next(end - 1) != end)
+                    break;
+            }
+            if (end - pc >= 2) {
+                ends[pc] = end;
+                used[pc] = slots.stream().toArray();
+            }
+            pc = Math.max(end, pc + 1);
+        }
+    }
+
+    /**
+     * Return whether `inst` always continues with the next instruction
+     * of its code.
+     */
+    private static boolean straight(Inst inst) {
+        switch (inst.opcode) {
+            case BRANCH: case LOOP: case TRY:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Return whether a block starts at `pc`.
+     */
+    public boolean isStart(int pc) {
+        return pc < ends.length && ends[pc] != 0;
+    }
+
+    /**
+     * Return the pc after the last instruction of the block starting
+     * at `pc`.
+     */
+    public int end(int pc) {
+        return ends[pc];
+    }
+
+    /**
+     * Return the slots of the variables that the block starting at
+     * `pc` reads or writes.
+     */
+    public int[] used(int pc) {
+        return used[pc];
+    }
+}
@@ -1,6 +0,0 @@
-package semant.amsyntax;
-
-import java.util.*;
-
-public class Code extends ArrayList<Inst> {
-}
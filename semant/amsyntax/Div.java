@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Div extends Inst {
-    public Div() {
-        super(Opcode.DIV);
+    public Div(int stmControlPoint) {
+        super(Opcode.DIV, stmControlPoint);
     }
 }
@@ -0,0 +1,180 @@
+package semant.amsyntax;
+
+import java.util.Arrays;
+
+/**
+ * Appends instructions to one growable buffer laid out as a Program,
+ * in a single pass. Targets that point at whatever comes next are left
+ * open and patched when the next instruction is appended, so the cost
+ * is linear in the size of the program.
+ *
+ * A Branch, Loop or Try is emitted by a begin call, the code of its
+ * parts in between the calls below, and an end call. The parts are
+ * laid out as in Program.
+ *
+ * Equal instructions, the ones the Emitter makes itself included, are
+ * interned so that the program shares them.
+ */
+public final class Emitter {
+
+    static final int NEXT = 0, ALT = 1, EXIT = 2;
+
+    Inst[] insts   = new Inst[16];
+    int[] targets  = new int[48];   // next, alt and exit per pc
+    int[] depths   = new int[16];   // Number of enclosing Try bodies per pc
+    boolean[] handlers = new boolean[16]; // Whether a pc ends a Try body
+    int size;
+    int maxDepth;
+
+    private final InstTable table = new InstTable();
+    private int depth;
+    private int[] holes = new int[16]; // Open targets
+    private int top;                   // Number of open targets
+    private int base;                  // Open targets below are kept
+    private int[] bases = new int[16]; // Saved bases of enclosing Branches
+    private int nesting;
+
+    /**
+     * Append an instruction, interned, point the open targets at it and
+     * return its pc. Its targets are left unset. A null instruction
+     * reserves the pc for one set later.
+     */
+    private int add(Inst inst) {
+        int pc = size++;
+        if (pc == insts.length) {
+            insts    = Arrays.copyOf(insts, 2 * pc);
+            targets  = Arrays.copyOf(targets, 6 * pc);
+            depths   = Arrays.copyOf(depths, 2 * pc);
+            handlers = Arrays.copyOf(handlers, 2 * pc);
+        }
+        insts[pc] = inst == null ? null : table.intern(inst);
+        targets[3 * pc + NEXT] = -1;
+        targets[3 * pc + ALT]  = -1;
+        targets[3 * pc + EXIT] = -1;
+        depths[pc] = depth;
+        maxDepth = Math.max(maxDepth, depth);
+        patch(pc);
+        return pc;
+    }
+
+    /**
+     * Point the open targets above the base at `pc` and close them.
+     */
+    private void patch(int pc) {
+        for (int i = base; i < top; ++i)
+            targets[holes[i]] = pc;
+        top = base;
+    }
+
+    /**
+     * Leave a target to point at whatever comes next.
+     */
+    private void hole(int target) {
+        if (top == holes.length)
+            holes = Arrays.copyOf(holes, 2 * top);
+        holes[top++] = target;
+    }
+
+    /**
+     * Append an instruction that continues at the next one.
+     */
+    public void emit(Inst inst) {
+        hole(3 * add(inst) + NEXT);
+    }
+
+    /**
+     * Append a BRANCH after its guard, followed by the code for true.
+     */
+    public int beginBranch(Inst inst) {
+        int pc = add(inst);
+        targets[3 * pc + NEXT] = size;
+        return pc;
+    }
+
+    /**
+     * Start the code for false of the BRANCH at `pc`.
+     */
+    public void elseBranch(int pc) {
+        targets[3 * pc + ALT] = size;
+        if (nesting == bases.length)
+            bases = Arrays.copyOf(bases, 2 * nesting);
+        bases[nesting++] = base;
+        base = top; // The true part continues after the BRANCH as well
+    }
+
+    /**
+     * End the BRANCH at `pc` after its code for false.
+     */
+    public void endBranch(int pc) {
+        base = bases[--nesting];
+        hole(3 * pc + EXIT);
+    }
+
+    /**
+     * Append a LOOP, followed by its guard.
+     */
+    public int beginLoop(Inst inst) {
+        int pc = add(inst);
+        targets[3 * pc + NEXT] = size;
+        return pc;
+    }
+
+    /**
+     * Append the BRANCH into the body of the LOOP at `pc` after its
+     * guard, followed by the body.
+     */
+    public int loopBody(int pc) {
+        int b = add(new Branch(insts[pc].stmControlPoint));
+        targets[3 * b + NEXT] = size;
+        return b;
+    }
+
+    /**
+     * End the body of the LOOP at `pc` with BRANCH `b` by jumping back
+     * and append the NOOP it leaves by.
+     */
+    public void endLoop(int pc, int b) {
+        patch(pc);
+        int n = add(new Noop(insts[pc].stmControlPoint));
+        targets[3 * b + ALT] = n;
+        hole(3 * n + NEXT);
+        hole(3 * b + EXIT);
+    }
+
+    /**
+     * Append a TRY, followed by its body.
+     */
+    public int beginTry(Inst inst) {
+        int pc = add(inst);
+        targets[3 * pc + NEXT] = size;
+        ++depth;
+        return pc;
+    }
+
+    /**
+     * Reserve the catch marker ending the current Try body, followed by
+     * the catch code. The marker is set by endTry.
+     */
+    public int catchTry() {
+        int h = add(null);
+        handlers[h] = true;
+        targets[3 * h + NEXT] = size;
+        --depth;
+        return h;
+    }
+
+    /**
+     * End the catch code after the marker at `h`, which takes the
+     * control point of the first catch instruction.
+     */
+    public void endTry(int h) {
+        insts[h] = table.intern(new Try(insts[h + 1].stmControlPoint));
+    }
+
+    /**
+     * Point the open targets at the end of the program.
+     */
+    void finish() {
+        patch(size);
+    }
+}
@@ -2,7 +2,7 @@ package semant.amsyntax;
 
 
 public class Eq extends Inst {
-    public Eq() {
-        super(Opcode.EQ);
+    public Eq(int stmControlPoint) {
+        super(Opcode.EQ, stmControlPoint);
     }
 }
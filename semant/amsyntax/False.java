@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class False extends Inst {
-    public False() {
-        super(Opcode.FALSE);
+    public False(int stmControlPoint) {
+        super(Opcode.FALSE, stmControlPoint);
     }
 }
@@ -3,13 +3,23 @@ package semant.amsyntax;
 public class Fetch extends Inst {
     
     public final String x;
+    public final int slot; // Resolved by the compiler
     
-    public Fetch(String x) {
-        super(Opcode.FETCH);
+    public Fetch(String x, int slot, int stmControlPoint) {
+        super(Opcode.FETCH, stmControlPoint);
         this.x = x;
+        this.slot = slot;
     }
     
     public String toString() {
         return super.toString() + "-" + x;
     }
+    
+    protected boolean sameOperands(Inst i) {
+        return x.equals(((Fetch) i).x);
+    }
+    
+    protected int operandHash() {
+        return x.hashCode();
+    }
 }
@@ -9,11 +9,15 @@ public abstract class Inst {
     
     
     public final Opcode opcode;
-    public int stmControlPoint;
+    public final int stmControlPoint;
     
+    InstTable table;  // The table that interned this instruction
+    private int hash; // Cached structural hash, 0 until computed
     
-    public Inst(Opcode opcode) {
+    
+    public Inst(Opcode opcode, int stmControlPoint) {
         this.opcode = opcode;
+        this.stmControlPoint = stmControlPoint;
     }
     
     
@@ -22,18 +26,41 @@ public abstract class Inst {
     }
     
     
-    // Two instructions are equal iff their string representations are equal.
+    // Two instructions are equal iff they have the same opcode, control
+    // point and operands. Equal instructions interned by the same table
+    // are the same object.
     public boolean equals(Object o) {
+        if (o == this)
+            return true;
         if (!(o instanceof Inst))
             return false;
         
-        return o.toString().equals(toString())
-            && stmControlPoint == ((Inst) o).stmControlPoint;
+        Inst i = (Inst) o;
+        if (table != null && table == i.table)
+            return false;
+        return opcode == i.opcode && stmControlPoint == i.stmControlPoint
+            && hashCode() == i.hashCode() && sameOperands(i);
     }
     
     
     public int hashCode() {
-        return toString().hashCode();
+        if (hash == 0) {
+            int h = 31 * (31 * opcode.ordinal() + stmControlPoint)
+                    + operandHash();
+            hash = h != 0 ? h : 1;
+        }
+        return hash;
+    }
+    
+    
+    // Compare the operands of an instruction with the same opcode.
+    protected boolean sameOperands(Inst i) {
+        return true;
+    }
+    
+    
+    protected int operandHash() {
+        return 0;
     }
     
 }
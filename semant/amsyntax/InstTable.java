@@ -0,0 +1,32 @@
+package semant.amsyntax;
+
+import java.util.HashMap;
+
+/**
+ * Interns instructions so that structurally equal instructions are
+ * the same object.
+ */
+public class InstTable {
+
+    private HashMap<Inst, Inst> insts = new HashMap<Inst, Inst>();
+
+    /**
+     * Return the interned instruction equal to `inst`.
+     */
+    public Inst intern(Inst inst) {
+        Inst i = insts.get(inst);
+        if (i == null) {
+            i = inst;
+            i.table = this;
+            insts.put(i, i);
+        }
+        return i;
+    }
+
+    /**
+     * Return the number of distinct instructions.
+     */
+    public int size() {
+        return insts.size();
+    }
+}
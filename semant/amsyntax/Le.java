@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Le extends Inst {
-    public Le() {
-        super(Opcode.LE);
+    public Le(int stmControlPoint) {
+        super(Opcode.LE, stmControlPoint);
     }
 }
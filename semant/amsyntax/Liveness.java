@@ -0,0 +1,97 @@
+package semant.amsyntax;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * The variables of a Program that may be read again, by pc, for normal
+ * and for exceptional configurations. A STORE only overwrites its
+ * variable in a normal configuration that stores an integer, and a
+ * catch marker may make an exceptional configuration normal again.
+ * No variable is live when no code is left.
+ */
+public final class Liveness {
+
+    private final int[][] dead;         // Dead slots per pc, normal then exceptional
+
+    /**
+     * Compute the live variables of `program`.
+     */
+    public Liveness(Program program) {
+        int n = program.size(), vars = program.numVariables();
+        BitSet[] normal = new BitSet[n + 1], exceptional = new BitSet[n + 1];
+        for (int pc = 0; pc <= n; ++pc) {
+            normal[pc] = new BitSet(vars);
+            exceptional[pc] = new BitSet(vars);
+        }
+
+        // Iterate backwards to a fixpoint, jumps back to loop heads
+        // need one more pass per level of nesting
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int pc = n - 1; pc >= 0; --pc) {
+                Inst inst = program.inst(pc);
+                int next = program.next(pc);
+                BitSet ln = (BitSet) normal[next].clone();
+                BitSet lx = (BitSet) exceptional[next].clone();
+                switch (inst.opcode) {
+                    case BRANCH:
+                        ln.or(normal[program.alt(pc)]);
+                        ln.or(exceptional[program.exit(pc)]);
+                        lx.or(exceptional[program.alt(pc)]);
+                        lx.or(exceptional[program.exit(pc)]);
+                        break;
+                    case FETCH:
+                        ln.set(((Fetch) inst).slot);
+                        lx.set(((Fetch) inst).slot);
+                        break;
+                    case STORE:
+                        // An error leaves the variable as it was
+                        ln.clear(((Store) inst).slot);
+                        ln.or(exceptional[next]);
+                        break;
+                    case TRY:
+                        if (program.isHandler(pc))
+                            lx.or(normal[next]);
+                        break;
+                    default:
+                        break;
+                }
+                if (!ln.equals(normal[pc]) || !lx.equals(exceptional[pc])) {
+                    normal[pc] = ln;
+                    exceptional[pc] = lx;
+                    changed = true;
+                }
+            }
+        }
+
+        // Most pcs have the same dead slots as some other, share them
+        HashMap<BitSet, int[]> shared = new HashMap<BitSet, int[]>();
+        dead = new int[2 * (n + 1)][];
+        for (int pc = 0; pc <= n; ++pc) {
+            dead[2 * pc]     = dead(normal[pc], vars, shared);
+            dead[2 * pc + 1] = dead(exceptional[pc], vars, shared);
+        }
+    }
+
+    private static int[] dead(BitSet live, int vars, HashMap<BitSet, int[]> shared) {
+        int[] slots = shared.get(live);
+        if (slots == null) {
+            BitSet d = new BitSet(vars);
+            d.set(0, vars);
+            d.andNot(live);
+            slots = d.stream().toArray();
+            shared.put(live, slots);
+        }
+        return slots;
+    }
+
+    /**
+     * Return the slots of the variables that a configuration at `pc`,
+     * exceptional or not, never reads again.
+     */
+    public int[] dead(int pc, boolean exceptional) {
+        return dead[2 * pc + (exceptional ? 1 : 0)];
+    }
+}
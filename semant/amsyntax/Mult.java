@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Mult extends Inst {
-    public Mult() {
-        super(Opcode.MULT);
+    public Mult(int stmControlPoint) {
+        super(Opcode.MULT, stmControlPoint);
     }
 }
@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Neg extends Inst {
-    public Neg() {
-        super(Opcode.NEG);
+    public Neg(int stmControlPoint) {
+        super(Opcode.NEG, stmControlPoint);
     }
 }
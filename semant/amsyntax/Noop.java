@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Noop extends Inst {
-    public Noop() {
-        super(Opcode.NOOP);
+    public Noop(int stmControlPoint) {
+        super(Opcode.NOOP, stmControlPoint);
     }
 }
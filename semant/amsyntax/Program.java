@@ -0,0 +1,211 @@
+package semant.amsyntax;
+
+import java.util.Arrays;
+
+/**
+ * AM code linked into a flat, immutable instruction array indexed by
+ * program counter. Control flow is resolved to jump targets: every
+ * instruction continues at `next`, a BRANCH continues at `alt` when
+ * its guard is false and at `exit` when it is exceptional. The pc
+ * `size()` is reached when no code is left.
+ *
+ * A LOOP is laid out as LOOP, its guard, a BRANCH into the body whose
+ * end jumps back to the LOOP, and a NOOP for the exit. A TRY is laid
+ * out as TRY, its body, a catch marker TRY and the catch code. The VM
+ * steps through this layout by pc, and the catch marker is where it
+ * clears the exception raised inside the body.
+ */
+public final class Program {
+
+    private static final int NEXT = Emitter.NEXT, ALT = Emitter.ALT,
+                             EXIT = Emitter.EXIT;
+
+    private final Inst[] insts;
+    private final int[] targets;        // next, alt and exit per pc
+    private final int[] depths;         // Number of enclosing Try bodies per pc
+    private final boolean[] handlers;   // Whether a pc ends a Try body
+    private final int maxDepth;
+    private final String[] variables;   // Variable names by slot
+
+    /**
+     * Take the program emitted to `e`.
+     */
+    public Program(Emitter e, String[] variables) {
+        e.finish();
+        this.variables = variables.clone();
+        insts    = Arrays.copyOf(e.insts, e.size);
+        targets  = Arrays.copyOf(e.targets, 3 * e.size);
+        depths   = Arrays.copyOf(e.depths, e.size);
+        handlers = Arrays.copyOf(e.handlers, e.size);
+        maxDepth = e.maxDepth;
+    }
+
+    /**
+     * Return the number of instructions, which is also the pc
+     * reached when no code is left.
+     */
+    public int size() {
+        return insts.length;
+    }
+
+    /**
+     * Return the instruction at `pc`.
+     */
+    public Inst inst(int pc) {
+        return insts[pc];
+    }
+
+    /**
+     * Return the pc executed after the one at `pc`.
+     */
+    public int next(int pc) {
+        return targets[3 * pc + NEXT];
+    }
+
+    /**
+     * Return the pc executed after a false BRANCH at `pc`.
+     */
+    public int alt(int pc) {
+        return targets[3 * pc + ALT];
+    }
+
+    /**
+     * Return the pc executed after an exceptional BRANCH at `pc`.
+     */
+    public int exit(int pc) {
+        return targets[3 * pc + EXIT];
+    }
+
+    /**
+     * Return the number of Try bodies enclosing `pc`. For a catch
+     * marker, this is the depth of the body it ends.
+     */
+    public int depth(int pc) {
+        return depths[pc];
+    }
+
+    /**
+     * Return the deepest nesting of Try bodies.
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Return the number of variable slots.
+     */
+    public int numVariables() {
+        return variables.length;
+    }
+
+    /**
+     * Return the name of the variable in the given slot.
+     */
+    public String variable(int slot) {
+        return variables[slot];
+    }
+
+    /**
+     * Return the names of the variables by slot.
+     */
+    public String[] variables() {
+        return variables.clone();
+    }
+
+    /**
+     * Return whether the instruction at `pc` ends a Try body.
+     */
+    public boolean isHandler(int pc) {
+        return handlers[pc];
+    }
+
+    /**
+     * Return whether the instruction at `pc` and its targets are the
+     * same in this and `other`.
+     */
+    private boolean sameAt(Program other, int pc) {
+        Inst i = insts[pc], j = other.insts[pc];
+        if (!i.equals(j) || depths[pc] != other.depths[pc]
+                || handlers[pc] != other.handlers[pc])
+            return false;
+        for (int k = 0; k < 3; ++k)
+            if (targets[3 * pc + k] != other.targets[3 * pc + k])
+                return false;
+        if (i instanceof Fetch)
+            return ((Fetch) i).slot == ((Fetch) j).slot;
+        if (i instanceof Store)
+            return ((Store) i).slot == ((Store) j).slot;
+        return true;
+    }
+
+    /**
+     * Return, for every pc, the lowest target of the instructions from
+     * that pc on.
+     */
+    private int[] minTargetsFrom() {
+        int[] min = new int[insts.length + 1];
+        min[insts.length] = Integer.MAX_VALUE;
+        for (int pc = insts.length - 1; pc >= 0; --pc) {
+            min[pc] = min[pc + 1];
+            for (int k = 0; k < 3; ++k)
+                if (targets[3 * pc + k] >= 0)
+                    min[pc] = Math.min(min[pc], targets[3 * pc + k]);
+        }
+        return min;
+    }
+
+    /**
+     * Return the highest pc `b` such that the configurations an older
+     * version of this program reached below and at `b` are the same as
+     * this program reaches. The code below `b` must be the same in
+     * both, control must leave it only for `b`, and nothing from `b`
+     * on may jump back below `b`, or to `b` in the older program.
+     * So `b` is at most the first pc whose instruction or targets
+     * differ, and need not start a statement: it may be in the middle
+     * of the expression of a top-level one. Return -1 if there is no
+     * such `b`.
+     */
+    public int reusablePrefix(Program older) {
+        int same = 0;
+        int n = Math.min(insts.length, older.insts.length);
+        while (same < n && sameAt(older, same))
+            ++same;
+
+        int[] newMin = minTargetsFrom(), oldMin = older.minTargetsFrom();
+        int best = -1, maxTarget = -1;
+        for (int b = 0; b <= same; ++b) {
+            if (maxTarget <= b && oldMin[b] > b && newMin[b] >= b)
+                best = b;
+            if (b < same)
+                for (int k = 0; k < 3; ++k)
+                    maxTarget = Math.max(maxTarget, targets[3 * b + k]);
+        }
+        return best;
+    }
+
+    /**
+     * Return a listing of the program, one instruction per line.
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int pc = 0; pc < insts.length; ++pc) {
+            Inst inst = insts[pc];
+            sb.append(pc + ": ");
+            switch (inst.opcode) {
+                case BRANCH:
+                    sb.append(inst.opcode + " " + next(pc) + ", " + alt(pc) +
+                              ", " + exit(pc));
+                    break;
+                case LOOP:
+                case TRY:
+                    sb.append(isHandler(pc) ? "CATCH" : inst.opcode.toString());
+                    sb.append(" " + next(pc));
+                    break;
+                default:
+                    sb.append(inst + " " + next(pc));
+            }
+            sb.append(" (ctrl: " + inst.stmControlPoint + ")\n");
+        }
+        return sb.toString();
+    }
+}
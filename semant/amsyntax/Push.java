@@ -4,8 +4,8 @@ public class Push extends Inst {
     
     public final String n;
     
-    public Push(String n) {
-        super(Opcode.PUSH);
+    public Push(String n, int stmControlPoint) {
+        super(Opcode.PUSH, stmControlPoint);
         this.n = n;
     }
     
@@ -17,4 +17,12 @@ public class Push extends Inst {
     public String toString() {
         return super.toString() + "-" + n;
     }
+    
+    protected boolean sameOperands(Inst i) {
+        return n.equals(((Push) i).n);
+    }
+    
+    protected int operandHash() {
+        return n.hashCode();
+    }
 }
@@ -3,13 +3,23 @@ package semant.amsyntax;
 public class Store extends Inst {
     
     public final String x;
+    public final int slot; // Resolved by the compiler
     
-    public Store(String x) {
-        super(Opcode.STORE);
+    public Store(String x, int slot, int stmControlPoint) {
+        super(Opcode.STORE, stmControlPoint);
         this.x = x;
+        this.slot = slot;
     }
     
     public String toString() {
         return super.toString() + "-" + x;
     }
+    
+    protected boolean sameOperands(Inst i) {
+        return x.equals(((Store) i).x);
+    }
+    
+    protected int operandHash() {
+        return x.hashCode();
+    }
 }
@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class Sub extends Inst {
-    public Sub() {
-        super(Opcode.SUB);
+    public Sub(int stmControlPoint) {
+        super(Opcode.SUB, stmControlPoint);
     }
 }
@@ -1,7 +1,7 @@
 package semant.amsyntax;
 
 public class True extends Inst {
-    public True() {
-        super(Opcode.TRUE);
+    public True(int stmControlPoint) {
+        super(Opcode.TRUE, stmControlPoint);
     }
 }
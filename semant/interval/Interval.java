@@ -0,0 +1,68 @@
+package semant.interval;
+
+import semant.signexc.SignExc;
+
+/**
+ * An integer interval that may also be an error, as given in the
+ * results of the IntervalDomain. Bounds of Long.MIN_VALUE and
+ * Long.MAX_VALUE stand for minus and plus infinity.
+ */
+public final class Interval {
+
+    public static final long NEG_INF = Long.MIN_VALUE;
+    public static final long POS_INF = Long.MAX_VALUE;
+
+    public final long lo;       // Lowest integer, lo > hi if none
+    public final long hi;       // Highest integer
+    public final boolean err;   // Whether it may be an error
+    private final SignExc sign; // The SignExc it abstracts to
+
+    Interval(long lo, long hi, boolean err, SignExc sign) {
+        this.lo   = lo;
+        this.hi   = hi;
+        this.err  = err;
+        this.sign = sign;
+    }
+
+    /**
+     * Return whether the interval has no integers.
+     */
+    public boolean isEmpty() {
+        return lo > hi;
+    }
+
+    /**
+     * Return the SignExc the interval abstracts to.
+     */
+    public SignExc sign() {
+        return sign;
+    }
+
+    private static String bound(long b) {
+        return b == NEG_INF ? "-inf" : b == POS_INF ? "+inf" : Long.toString(b);
+    }
+
+    public String toString() {
+        if (isEmpty())
+            return err ? "ERR_A" : "NONE_A";
+
+        String s = "[" + bound(lo) + ", " + bound(hi) + "]";
+        return err ? s + " | ERR_A" : s;
+    }
+
+    public int hashCode() {
+        // All empty intervals with the same error are equal
+        if (isEmpty())
+            return err ? 1 : 0;
+        return Long.hashCode(lo) * 31 + Long.hashCode(hi) ^ (err ? 1 : 0);
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof Interval))
+            return false;
+
+        Interval i = (Interval) o;
+        return isEmpty() ? i.isEmpty() && i.err == err
+                         : i.lo == lo && i.hi == hi && i.err == err;
+    }
+}
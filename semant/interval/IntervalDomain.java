@@ -0,0 +1,399 @@
+package semant.interval;
+
+import java.util.Arrays;
+import semant.Domain;
+import semant.IntLattice;
+import semant.signexc.SignExc;
+import semant.signexc.SignExcBitOps;
+import semant.signexc.SignExcBits;
+import semant.signexc.TTExcBitLattice;
+import static semant.interval.Interval.NEG_INF;
+import static semant.interval.Interval.POS_INF;
+import static semant.signexc.SignExcBits.*;
+
+/**
+ * The domain of integer intervals with long bounds, each of which may
+ * also be an error. Intervals are interned, and a value is an int
+ * handle: the index of its bounds in this domain, shifted past the
+ * SignExcBits of its sign and error. Index 0 has no integers, so
+ * NONE_A and ERR_A are those of SignExcBits, and the predicates of
+ * SignExcBitOps hold for intervals as they are. Truth values are the
+ * TTExc values of SignExcBits. Arithmetic saturates at the infinite
+ * bounds, and division truncates, so no operation allocates unless it
+ * gives an interval never seen before. Looking an interval up takes no
+ * lock, only adding one does.
+ */
+public class IntervalDomain extends SignExcBitOps implements Domain<Interval> {
+
+    private static final int SHIFT = 5;               // Bits below the index
+    private static final int MAX_INDEX = 1 << (31 - SHIFT);
+
+    private volatile Table entries;                   // Intervals published so far
+    private final int unknown;                        // [-inf, +inf]
+    private final IntLattice zLattice;
+    private final IntLattice ttLattice;
+
+    /**
+     * The bounds of the intervals and a hash table of their indices.
+     * The arrays are shared with later tables, which write indices from
+     * `size` on into them, so a lookup skips those.
+     */
+    private static final class Table {
+        final long[] bounds;                          // Lo and hi by index
+        final int[] indices;                          // Indices by hash, 0 if free
+        final int size;                               // Indices published
+
+        Table(long[] bounds, int[] indices, int size) {
+            this.bounds  = bounds;
+            this.indices = indices;
+            this.size    = size;
+        }
+    }
+
+    public IntervalDomain() {
+        long[] bounds = new long[256];
+        bounds[0] = POS_INF; // No integers, so that hulls ignore it
+        bounds[1] = NEG_INF;
+        entries   = new Table(bounds, new int[256], 1);
+        unknown   = intern(NEG_INF, POS_INF, false);
+        zLattice  = new IntervalLattice(this, intern(NEG_INF, POS_INF, true));
+        ttLattice = new TTExcBitLattice();
+    }
+
+    /**
+     * Return the lowest integer of `a`, POS_INF if it has none.
+     */
+    long lo(int a) {
+        return entries.bounds[2 * (a >>> SHIFT)];
+    }
+
+    /**
+     * Return the highest integer of `a`, NEG_INF if it has none.
+     */
+    long hi(int a) {
+        return entries.bounds[2 * (a >>> SHIFT) + 1];
+    }
+
+    /**
+     * Return the interval from `lo` to `hi`, which may be an error.
+     */
+    int intern(long lo, long hi, boolean err) {
+        if (lo > hi)
+            return err ? ERR_A : NONE_A;
+
+        // An infinite bound on the wrong side only stands for a finite
+        // one too large to represent
+        if (lo == POS_INF)
+            lo = POS_INF - 1;
+        if (hi == NEG_INF)
+            hi = NEG_INF + 1;
+        int sign = (lo < 0 ? NEG : 0) | (lo <= 0 && hi >= 0 ? ZERO : 0)
+                 | (hi > 0 ? POS : 0);
+        return index(lo, hi) << SHIFT | sign | (err ? ERR_A : 0);
+    }
+
+    /**
+     * Return the index of the bounds `lo` and `hi`, adding them if
+     * they are new.
+     */
+    private int index(long lo, long hi) {
+        int index = find(entries, lo, hi);
+        return index != 0 ? index : add(lo, hi);
+    }
+
+    /**
+     * Return the index of the bounds `lo` and `hi` in `t`, 0 if they
+     * are not there.
+     */
+    private static int find(Table t, long lo, long hi) {
+        int mask = t.indices.length - 1;
+        for (int i = hash(lo, hi) & mask; ; i = (i + 1) & mask) {
+            int index = t.indices[i];
+            if (index == 0)
+                return 0;
+            if (index < t.size && t.bounds[2 * index] == lo
+                    && t.bounds[2 * index + 1] == hi)
+                return index;
+        }
+    }
+
+    /**
+     * Return the index of the bounds `lo` and `hi`, adding them unless
+     * another thread just did.
+     */
+    private synchronized int add(long lo, long hi) {
+        Table t = entries;
+        int index = find(t, lo, hi);
+        if (index != 0)
+            return index;
+
+        int size = t.size;
+        if (size == MAX_INDEX)
+            throw new IllegalStateException("Too many intervals");
+        long[] bounds = t.bounds;
+        if (2 * size == bounds.length)
+            bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+        bounds[2 * size]     = lo;
+        bounds[2 * size + 1] = hi;
+        int[] indices = t.indices;
+        if (2 * size >= indices.length) {
+            indices = new int[2 * indices.length];
+            for (index = 1; index < size; ++index)
+                insert(indices, bounds, index);
+        }
+        insert(indices, bounds, size);
+        entries = new Table(bounds, indices, size + 1);
+        return size;
+    }
+
+    private static void insert(int[] indices, long[] bounds, int index) {
+        int mask = indices.length - 1;
+        int i = hash(bounds[2 * index], bounds[2 * index + 1]) & mask;
+        while (indices[i] != 0)
+            i = (i + 1) & mask;
+        indices[i] = index;
+    }
+
+    private static int hash(long lo, long hi) {
+        long h = lo * 0x9E3779B97F4A7C15L + hi;
+        return (int) (h ^ h >>> 32);
+    }
+
+    /**
+     * Return the result of an operation on `a1` and `a2` if one of them
+     * has no integers, `none` or `err`, otherwise -1.
+     */
+    private static int degenerate(int a1, int a2, int none, int err) {
+        if (a1 == NONE_A || a2 == NONE_A)
+            return none;
+        if (a1 == ERR_A || a2 == ERR_A)
+            return err;
+        return -1;
+    }
+
+    private static boolean infinite(long x) {
+        return x == NEG_INF || x == POS_INF;
+    }
+
+    private static long negate(long x) {
+        return x == NEG_INF ? POS_INF : x == POS_INF ? NEG_INF : -x;
+    }
+
+    /**
+     * Return the sum of two bounds, which are never opposite
+     * infinities.
+     */
+    private static long plus(long x, long y) {
+        if (infinite(x))
+            return x;
+        if (infinite(y))
+            return y;
+        long r = x + y;
+        if (((x ^ r) & (y ^ r)) < 0)
+            return x < 0 ? NEG_INF : POS_INF;
+        return r;
+    }
+
+    private static long times(long x, long y) {
+        if (x == 0 || y == 0)
+            return 0;
+        boolean pos = (x < 0) == (y < 0);
+        if (infinite(x) || infinite(y))
+            return pos ? POS_INF : NEG_INF;
+        long r = x * y;
+        if (Math.multiplyHigh(x, y) != r >> 63)
+            return pos ? POS_INF : NEG_INF;
+        return r;
+    }
+
+    /**
+     * Return the truncated quotient of two bounds, `y` not 0.
+     */
+    private static long quot(long x, long y) {
+        boolean pos = (x < 0) == (y < 0);
+        if (infinite(y))
+            return infinite(x) ? (pos ? 1 : -1) : 0;
+        if (infinite(x))
+            return pos ? POS_INF : NEG_INF;
+        return x / y;
+    }
+
+    private static boolean isErr(int a) {
+        return (a & ERR_A) != 0;
+    }
+
+    public int abs(int z) {
+        return intern(z, z, false);
+    }
+
+    public int add(int a1, int a2) {
+        int d = degenerate(a1, a2, NONE_A, ERR_A);
+        if (d >= 0)
+            return d;
+
+        return intern(plus(lo(a1), lo(a2)), plus(hi(a1), hi(a2)),
+                      isErr(a1 | a2));
+    }
+
+    public int subtract(int a1, int a2) {
+        int d = degenerate(a1, a2, NONE_A, ERR_A);
+        if (d >= 0)
+            return d;
+
+        return intern(plus(lo(a1), negate(hi(a2))),
+                      plus(hi(a1), negate(lo(a2))), isErr(a1 | a2));
+    }
+
+    public int multiply(int a1, int a2) {
+        int d = degenerate(a1, a2, NONE_A, ERR_A);
+        if (d >= 0)
+            return d;
+
+        long l1 = lo(a1), h1 = hi(a1), l2 = lo(a2), h2 = hi(a2);
+        long c1 = times(l1, l2), c2 = times(l1, h2);
+        long c3 = times(h1, l2), c4 = times(h1, h2);
+        return intern(Math.min(Math.min(c1, c2), Math.min(c3, c4)),
+                      Math.max(Math.max(c1, c2), Math.max(c3, c4)),
+                      isErr(a1 | a2));
+    }
+
+    public int divide(int a1, int a2) {
+        int d = degenerate(a1, a2, NONE_A, ERR_A);
+        if (d >= 0)
+            return d;
+
+        // Divide by the negative and positive parts of the divisor
+        // separately, dividing by 0 is an error
+        long l1 = lo(a1), h1 = hi(a1), l2 = lo(a2), h2 = hi(a2);
+        long lo = POS_INF, hi = NEG_INF;
+        if (l2 < 0) {
+            long c1 = quot(l1, l2), c2 = quot(l1, Math.min(h2, -1));
+            long c3 = quot(h1, l2), c4 = quot(h1, Math.min(h2, -1));
+            lo = Math.min(Math.min(c1, c2), Math.min(c3, c4));
+            hi = Math.max(Math.max(c1, c2), Math.max(c3, c4));
+        }
+        if (h2 > 0) {
+            long c1 = quot(l1, Math.max(l2, 1)), c2 = quot(l1, h2);
+            long c3 = quot(h1, Math.max(l2, 1)), c4 = quot(h1, h2);
+            lo = Math.min(lo, Math.min(Math.min(c1, c2), Math.min(c3, c4)));
+            hi = Math.max(hi, Math.max(Math.max(c1, c2), Math.max(c3, c4)));
+        }
+        return intern(lo, hi, isErr(a1 | a2) || (l2 <= 0 && h2 >= 0));
+    }
+
+    public int eq(int a1, int a2) {
+        int d = degenerate(a1, a2, NONE_B, ERR_B);
+        if (d >= 0)
+            return d;
+        if (isErr(a1 | a2))
+            return ANY_B;
+
+        long l1 = lo(a1), h1 = hi(a1), l2 = lo(a2), h2 = hi(a2);
+        int b = NONE_B;
+        if (l1 <= h2 && l2 <= h1)
+            b |= TT;
+        if (l1 != h1 || l2 != h2 || l1 != l2)
+            b |= FF;
+        return b;
+    }
+
+    public int leq(int a1, int a2) {
+        int d = degenerate(a1, a2, NONE_B, ERR_B);
+        if (d >= 0)
+            return d;
+        if (isErr(a1 | a2))
+            return ANY_B;
+
+        int b = NONE_B;
+        if (lo(a1) <= hi(a2))
+            b |= TT;
+        if (hi(a1) > lo(a2))
+            b |= FF;
+        return b;
+    }
+
+    public IntLattice zLattice() {
+        return zLattice;
+    }
+
+    public IntLattice ttLattice() {
+        return ttLattice;
+    }
+
+    public int bits() {
+        return 32;
+    }
+
+    public int unknown() {
+        return unknown;
+    }
+
+    public boolean joinsByUnion() {
+        return false;
+    }
+
+    public boolean widens() {
+        return true;
+    }
+
+    public int widen(int a1, int a2) {
+        if (lo(a1) > hi(a1))
+            return zLattice.lub(a1, a2);
+
+        // Bounds that grew are given up
+        long lo = lo(a2) < lo(a1) ? NEG_INF : lo(a1);
+        long hi = hi(a2) > hi(a1) ? POS_INF : hi(a1);
+        return intern(lo, hi, isErr(a1 | a2));
+    }
+
+    public int narrow(int a1, int a2) {
+        if (lo(a2) > hi(a2))
+            return a2;
+
+        // Only bounds given up by widening are taken back
+        long lo = lo(a1) == NEG_INF ? lo(a2) : lo(a1);
+        long hi = hi(a1) == POS_INF ? hi(a2) : hi(a1);
+        return intern(lo, hi, isErr(a2));
+    }
+
+    public int atMost(int a, boolean strict) {
+        long hi = hi(a);
+        if (lo(a) > hi)
+            return NONE_A;
+        return intern(NEG_INF, strict && hi != POS_INF ? hi - 1 : hi, false);
+    }
+
+    public int atLeast(int a, boolean strict) {
+        long lo = lo(a);
+        if (lo > hi(a))
+            return NONE_A;
+        return intern(strict && lo != NEG_INF ? lo + 1 : lo, POS_INF, false);
+    }
+
+    public int exclude(int a, int b) {
+        long lo = lo(a), hi = hi(a), v = lo(b);
+        if (v != hi(b) || v == NEG_INF || v == POS_INF)
+            return a;
+        return intern(lo == v ? lo + 1 : lo, hi == v ? hi - 1 : hi, isErr(a));
+    }
+
+    public Interval value(int a) {
+        return new Interval(lo(a), hi(a), isErr(a), sign(a));
+    }
+
+    public Interval[] newArray(int n) {
+        return new Interval[n];
+    }
+
+    public SignExc sign(Interval a) {
+        return a.sign();
+    }
+
+    private static SignExc sign(int a) {
+        return SignExcBits.signExc(a & ANY_A);
+    }
+
+    public String toString(int v) {
+        return isTT(v) ? SignExcBits.toString(v) : value(v).toString();
+    }
+}
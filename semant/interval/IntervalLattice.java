@@ -0,0 +1,33 @@
+package semant.interval;
+
+import semant.IntLattice;
+import static semant.signexc.SignExcBits.*;
+
+/**
+ * The lattice of the intervals of an IntervalDomain, the lub being the
+ * smallest interval containing both.
+ */
+public class IntervalLattice extends IntLattice {
+
+    private final IntervalDomain domain;
+
+    IntervalLattice(IntervalDomain domain, int top) {
+        super(top, NONE_A);
+        this.domain = domain;
+    }
+
+    public int lub(int a1, int a2) {
+        if (a1 == a2)
+            return a1;
+
+        return domain.intern(Math.min(domain.lo(a1), domain.lo(a2)),
+                             Math.max(domain.hi(a1), domain.hi(a2)),
+                             ((a1 | a2) & ERR_A) != 0);
+    }
+
+    public int glb(int a1, int a2) {
+        return domain.intern(Math.max(domain.lo(a1), domain.lo(a2)),
+                             Math.min(domain.hi(a1), domain.hi(a2)),
+                             (a1 & a2 & ERR_A) != 0);
+    }
+}
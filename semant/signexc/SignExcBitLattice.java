@@ -0,0 +1,23 @@
+package semant.signexc;
+
+import semant.IntLattice;
+import static semant.signexc.SignExcBits.*;
+
+/**
+ * SignExcLattice over the bits of SignExcBits.
+ */
+public class SignExcBitLattice extends IntLattice {
+
+    public SignExcBitLattice() {
+        super(ANY_A, NONE_A);
+    }
+
+    public int lub(int a1, int a2) {
+        return closeA(a1 | a2);
+    }
+
+    public int glb(int a1, int a2) {
+        return a1 & a2;
+    }
+
+}
@@ -0,0 +1,110 @@
+package semant.signexc;
+
+import semant.IntOperations;
+import static semant.signexc.SignExcBits.*;
+
+/**
+ * SignExcOps over the bits of SignExcBits. Arithmetic looks up one
+ * flat table built from SignExcOps, everything else is bit operations.
+ */
+public class SignExcBitOps implements IntOperations {
+
+    private static final byte[] ADD_MAP  = new byte[256];
+    private static final byte[] SUB_MAP  = new byte[256];
+    private static final byte[] MULT_MAP = new byte[256];
+    private static final byte[] DIV_MAP  = new byte[256];
+    private static final byte[] EQ_MAP   = new byte[256];
+    private static final byte[] LEQ_MAP  = new byte[256];
+    private static final byte[] AND_MAP  = new byte[64];
+
+    static {
+        SignExcOps op = new SignExcOps();
+        for (int i = 0; i < 16; ++i) {
+            for (int j = 0; j < 16; ++j) {
+                SignExc a1 = signExc(i), a2 = signExc(j);
+                ADD_MAP[i << 4 | j]  = (byte) of(op.add(a1, a2));
+                SUB_MAP[i << 4 | j]  = (byte) of(op.subtract(a1, a2));
+                MULT_MAP[i << 4 | j] = (byte) of(op.multiply(a1, a2));
+                DIV_MAP[i << 4 | j]  = (byte) of(op.divide(a1, a2));
+                EQ_MAP[i << 4 | j]   = (byte) of(op.eq(a1, a2));
+                LEQ_MAP[i << 4 | j]  = (byte) of(op.leq(a1, a2));
+            }
+        }
+        for (int i = 0; i < 8; ++i)
+            for (int j = 0; j < 8; ++j)
+                AND_MAP[i << 3 | j] = (byte) of(op.and(ttExc(TAG | i), ttExc(TAG | j)));
+    }
+
+    private static int index(int a1, int a2) {
+        return (a1 & ANY_A) << 4 | a2 & ANY_A;
+    }
+
+    public int abs(boolean b) {
+        return b ? TT : FF;
+    }
+
+    public int abs(int z) {
+        return 1 << (Integer.signum(z) + 1);
+    }
+
+    public int add(int a1, int a2) {
+        return ADD_MAP[index(a1, a2)];
+    }
+
+    public int and(int b1, int b2) {
+        return AND_MAP[(b1 & 7) << 3 | b2 & 7];
+    }
+
+    public int divide(int a1, int a2) {
+        return DIV_MAP[index(a1, a2)];
+    }
+
+    public int eq(int a1, int a2) {
+        return EQ_MAP[index(a1, a2)];
+    }
+
+    public int leq(int a1, int a2) {
+        return LEQ_MAP[index(a1, a2)];
+    }
+
+    public int multiply(int a1, int a2) {
+        return MULT_MAP[index(a1, a2)];
+    }
+
+    public int neg(int b) {
+        // Swap TT and FF
+        return b & ~3 | (b & 1) << 1 | (b & 2) >> 1;
+    }
+
+    public boolean possiblyAErr(int a) {
+        return (a & ERR_A) != 0;
+    }
+
+    public boolean possiblyBErr(int b) {
+        return (b & ERR_B & ~TAG) != 0;
+    }
+
+    public boolean possiblyFalse(int b) {
+        return (b & FF & ~TAG) != 0;
+    }
+
+    public boolean possiblyInt(int a) {
+        return (a & Z) != 0;
+    }
+
+    public boolean possiblyTrue(int b) {
+        return (b & TT & ~TAG) != 0;
+    }
+
+    public int subtract(int a1, int a2) {
+        return SUB_MAP[index(a1, a2)];
+    }
+
+    public boolean isInt(int a) {
+        return a != NONE_A && (a & ERR_A) == 0;
+    }
+
+    public boolean isNone(int a) {
+        return a == NONE_A;
+    }
+}
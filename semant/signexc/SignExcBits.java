@@ -0,0 +1,95 @@
+package semant.signexc;
+
+/**
+ * SignExc and TTExc values as bitsets of the outcomes they allow, so
+ * that the lub of two values is their union and the glb their
+ * intersection. An error together with any other outcome is ANY, as
+ * in the enum lattices. TTExc values also have the TAG bit set, which
+ * tells them from SignExc values on the stack.
+ */
+public final class SignExcBits {
+
+    public static final int NONE_A = 0, NEG = 1, ZERO = 2, POS = 4, ERR_A = 8;
+    public static final int Z = NEG | ZERO | POS, ANY_A = Z | ERR_A;
+
+    public static final int TAG = 16;
+    public static final int NONE_B = TAG, TT = TAG | 1, FF = TAG | 2,
+                            ERR_B = TAG | 4;
+    public static final int T = TT | FF, ANY_B = T | ERR_B;
+
+    // Bits by ordinal, and values by bits
+    private static final int[] Z_BITS = {
+        NONE_A, NEG, ZERO, POS, ERR_A, NEG | ZERO, NEG | POS, ZERO | POS, Z, ANY_A
+    };
+    private static final int[] TT_BITS = { NONE_B, TT, FF, ERR_B, T, ANY_B };
+    private static final SignExc[] Z_VALUES = new SignExc[ANY_A + 1];
+    private static final TTExc[] TT_VALUES = new TTExc[ANY_B - TAG + 1];
+
+    static {
+        for (SignExc a : SignExc.values())
+            Z_VALUES[Z_BITS[a.ordinal()]] = a;
+        for (TTExc b : TTExc.values())
+            TT_VALUES[TT_BITS[b.ordinal()] - TAG] = b;
+    }
+
+    private SignExcBits() {
+    }
+
+    /**
+     * Return the bits of `a`.
+     */
+    public static int of(SignExc a) {
+        return Z_BITS[a.ordinal()];
+    }
+
+    /**
+     * Return the bits of `b`.
+     */
+    public static int of(TTExc b) {
+        return TT_BITS[b.ordinal()];
+    }
+
+    /**
+     * Return the SignExc with the given bits.
+     */
+    public static SignExc signExc(int a) {
+        return Z_VALUES[closeA(a)];
+    }
+
+    /**
+     * Return the TTExc with the given bits.
+     */
+    public static TTExc ttExc(int b) {
+        return TT_VALUES[closeB(b) - TAG];
+    }
+
+    /**
+     * Return whether `v` is a TTExc value.
+     */
+    public static boolean isTT(int v) {
+        return (v & TAG) != 0;
+    }
+
+    /**
+     * Return the name of the value `v` of either kind.
+     */
+    public static String toString(int v) {
+        return isTT(v) ? ttExc(v).toString() : signExc(v).toString();
+    }
+
+    /**
+     * Return `a` with all outcomes if it has an error and an integer.
+     */
+    static int closeA(int a) {
+        int both = (a >> 3) & (a | a >> 1 | a >> 2) & 1;
+        return a | -both & ANY_A;
+    }
+
+    /**
+     * Return `b` with all outcomes if it has an error and a truth value.
+     */
+    static int closeB(int b) {
+        int both = (b >> 2) & (b | b >> 1) & 1;
+        return b | -both & ANY_B;
+    }
+}
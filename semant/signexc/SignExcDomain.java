@@ -0,0 +1,90 @@
+package semant.signexc;
+
+import semant.Domain;
+import semant.IntLattice;
+import static semant.signexc.SignExcBits.*;
+
+/**
+ * The SignExc and TTExc domain over the bits of SignExcBits, which
+ * has finite height and needs no widening.
+ */
+public class SignExcDomain extends SignExcBitOps implements Domain<SignExc> {
+
+    public static final SignExcDomain INSTANCE = new SignExcDomain();
+
+    private final IntLattice zLattice  = new SignExcBitLattice();
+    private final IntLattice ttLattice = new TTExcBitLattice();
+
+    private SignExcDomain() {
+    }
+
+    public IntLattice zLattice() {
+        return zLattice;
+    }
+
+    public IntLattice ttLattice() {
+        return ttLattice;
+    }
+
+    public int bits() {
+        return 4;
+    }
+
+    public int unknown() {
+        return Z;
+    }
+
+    public boolean joinsByUnion() {
+        // Variables are never errors, so closing is not needed
+        return true;
+    }
+
+    public boolean widens() {
+        return false;
+    }
+
+    public int widen(int a1, int a2) {
+        return zLattice.lub(a1, a2);
+    }
+
+    public int narrow(int a1, int a2) {
+        return a2;
+    }
+
+    public int atMost(int a, boolean strict) {
+        if ((a & POS) != 0)
+            return Z;
+        if ((a & ZERO) != 0)
+            return strict ? NEG : NEG | ZERO;
+        return a & NEG;
+    }
+
+    public int atLeast(int a, boolean strict) {
+        if ((a & NEG) != 0)
+            return Z;
+        if ((a & ZERO) != 0)
+            return strict ? POS : ZERO | POS;
+        return a & POS;
+    }
+
+    public int exclude(int a, int b) {
+        // Only 0 is a single integer
+        return (b & Z) == ZERO ? a & ~ZERO : a;
+    }
+
+    public SignExc value(int a) {
+        return SignExcBits.signExc(a);
+    }
+
+    public SignExc[] newArray(int n) {
+        return new SignExc[n];
+    }
+
+    public SignExc sign(SignExc a) {
+        return a;
+    }
+
+    public String toString(int v) {
+        return SignExcBits.toString(v);
+    }
+}
@@ -0,0 +1,23 @@
+package semant.signexc;
+
+import semant.IntLattice;
+import static semant.signexc.SignExcBits.*;
+
+/**
+ * TTExcLattice over the bits of SignExcBits.
+ */
+public class TTExcBitLattice extends IntLattice {
+
+    public TTExcBitLattice() {
+        super(ANY_B, NONE_B);
+    }
+
+    public int lub(int b1, int b2) {
+        return closeB(b1 | b2);
+    }
+
+    public int glb(int b1, int b2) {
+        return b1 & b2;
+    }
+
+}
@@ -1,7 +1,6 @@
 package semant.whilesyntax;
 
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
 public class Assignment extends Stm {
 
@@ -13,7 +12,7 @@ public class Assignment extends Stm {
         this.a = a;
     }
     
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+    public void accept(WhileVisitor v) {
+        v.visit(this);
     }
 }
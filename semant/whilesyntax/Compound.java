@@ -1,19 +1,67 @@
 package semant.whilesyntax;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
+/**
+ * A sequence of statements. Nested sequences are flattened into one
+ * list, so visitors loop over it instead of recursing once per `;`.
+ */
 public class Compound extends Stm {
 
-    public final Stm s1, s2;
-    
+    private final ArrayList<Stm> stms; // Shared with longer sequences
+    private final int size;            // Leading statements of stms in this one
+
     public Compound(Stm s1, Stm s2) {
-        this.s1 = s1;
-        this.s2 = s2;
+        this(sequence(s1, s2));
+    }
+
+    private Compound(ArrayList<Stm> stms) {
+        this.stms = stms;
+        size = stms.size();
     }
-    
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+
+    private static ArrayList<Stm> sequence(Stm s1, Stm s2) {
+        ArrayList<Stm> stms = new ArrayList<Stm>();
+        add(stms, s1);
+        add(stms, s2);
+        return stms;
     }
-    
+
+    private static void add(ArrayList<Stm> stms, Stm s) {
+        if (s instanceof Compound)
+            stms.addAll(((Compound) s).statements());
+        else
+            stms.add(s);
+    }
+
+    /**
+     * Return `s1; s2` without changing `s1`. If `s1` is a sequence that
+     * has not been extended yet, as is the case while parsing, the new
+     * one shares its list, so a long sequence is built in linear time.
+     */
+    public static Compound append(Stm s1, Stm s2) {
+        if (!(s1 instanceof Compound))
+            return new Compound(s1, s2);
+        Compound c = (Compound) s1;
+        if (c.size != c.stms.size()
+                || s2 instanceof Compound && ((Compound) s2).stms == c.stms)
+            return new Compound(s1, s2);
+        add(c.stms, s2);
+        return new Compound(c.stms);
+    }
+
+    /**
+     * Return the statements in order, none of which is a Compound.
+     */
+    public List<Stm> statements() {
+        return Collections.unmodifiableList(stms.subList(0, size));
+    }
+
+    public void accept(WhileVisitor v) {
+        v.visit(this);
+    }
+
 }
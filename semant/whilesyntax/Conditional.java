@@ -1,7 +1,6 @@
 package semant.whilesyntax;
 
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
 public class Conditional extends Stm {
 
@@ -14,7 +13,7 @@ public class Conditional extends Stm {
         this.s2 = s2;
     }
     
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+    public void accept(WhileVisitor v) {
+        v.visit(this);
     }
 }
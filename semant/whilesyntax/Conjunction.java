@@ -1,7 +1,6 @@
 package semant.whilesyntax;
 
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
 public class Conjunction extends Bexp {
     
@@ -13,7 +12,7 @@ public class Conjunction extends Bexp {
         this.b2 = b2;
     }
     
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+    public void accept(WhileVisitor v) {
+        v.visit(this);
     }
 }
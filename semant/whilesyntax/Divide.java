@@ -1,7 +1,6 @@
 package semant.whilesyntax;
 
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
 public class Divide extends Aexp {
 
@@ -12,8 +11,8 @@ public class Divide extends Aexp {
         this.a2 = a2;
     }
     
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+    public void accept(WhileVisitor v) {
+        v.visit(this);
     }
         
 }
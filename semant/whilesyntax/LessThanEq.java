@@ -1,7 +1,6 @@
 package semant.whilesyntax;
 
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
 public class LessThanEq extends Bexp {
 
@@ -12,7 +11,7 @@ public class LessThanEq extends Bexp {
         this.a2 = a2;
     }
     
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+    public void accept(WhileVisitor v) {
+        v.visit(this);
     }
 }
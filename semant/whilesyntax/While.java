@@ -1,7 +1,6 @@
 package semant.whilesyntax;
 
 import semant.WhileVisitor;
-import semant.amsyntax.Code;
 
 public class While extends Stm {
 
@@ -12,8 +11,8 @@ public class While extends Stm {
         this.b = b;
         this.s = s;
     }
-    public Code accept(WhileVisitor v) {
-        return v.visit(this);
+    public void accept(WhileVisitor v) {
+        v.visit(this);
     }
 
 }